@@ -0,0 +1,39 @@
+package com.assessment.fileloader;
+
+import com.assessment.fileloader.service.BackfillService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+
+/**
+ * Runs a one-shot backfill when started with --backfill.enabled=true and exits once it is done,
+ * with exit code 1 if any file failed to load.
+ */
+@Component
+@ConditionalOnProperty(name = "backfill.enabled", havingValue = "true")
+public class BackfillRunner implements ApplicationRunner {
+
+    private final BackfillService backfillService;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${backfill.directory}")
+    private String directory;
+
+    public BackfillRunner(BackfillService backfillService, ConfigurableApplicationContext context) {
+        this.backfillService = backfillService;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        BackfillService.BackfillSummary summary = backfillService.backfill(Paths.get(directory));
+        int exitCode = summary.filesFailed() > 0 ? 1 : 0;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
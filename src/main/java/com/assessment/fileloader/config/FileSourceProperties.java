@@ -0,0 +1,61 @@
+package com.assessment.fileloader.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Input sources bound from file.monitoring.sources[n].*. When no sources are configured the
+ * single file.monitoring.directory / file.monitoring.processed-directory pair is used instead.
+ * Invalid sources fail startup rather than every monitoring cycle.
+ */
+@Component
+@ConfigurationProperties(prefix = "file.monitoring")
+@Validated
+@Data
+public class FileSourceProperties {
+
+    @Valid
+    private List<Source> sources = new ArrayList<>();
+
+    @AssertTrue(message = "file.monitoring.sources names must be unique")
+    public boolean isSourceNamesUnique() {
+        Set<String> names = new HashSet<>();
+        return sources.stream().allMatch(source -> names.add(source.getName() != null ? source.getName() : source.getDirectory()));
+    }
+
+    @Data
+    public static class Source {
+
+        // Name used in logs and backlog reporting, e.g. a switch or region id
+        private String name;
+
+        @NotBlank
+        private String directory;
+
+        @NotBlank
+        private String processedDirectory;
+
+        // Glob matched against file names, e.g. "*.log"
+        @NotBlank
+        private String filePattern = "*";
+
+        // Relative share of worker slots when several sources have a backlog
+        @Positive
+        private int weight = 1;
+
+        // Maximum number of files from this source processed at the same time
+        @Positive
+        private int maxConcurrency = 1;
+    }
+}
@@ -0,0 +1,15 @@
+package com.assessment.fileloader.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Directory monitoring, spool draining and index sweeping only run in the normal service mode,
+ * not during a one-shot backfill.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "backfill.enabled", havingValue = "false", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,27 @@
+package com.assessment.fileloader.controller;
+
+import com.assessment.fileloader.service.FileMonitoringService;
+import com.assessment.fileloader.service.WeightedFairScheduler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/sources")
+@RequiredArgsConstructor
+public class FileSourceController {
+
+    private final FileMonitoringService fileMonitoringService;
+
+    /**
+     * Per-source backlog of the file queue
+     * @return queued and in-flight files, and files completed since startup, for each source
+     */
+    @GetMapping("/backlog")
+    public List<WeightedFairScheduler.SourceBacklog> getBacklog() {
+        return fileMonitoringService.getSourceBacklog();
+    }
+}
@@ -0,0 +1,43 @@
+package com.assessment.fileloader.controller;
+
+import com.assessment.fileloader.service.RecentRecordIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/recent")
+@RequiredArgsConstructor
+public class RecentRecordController {
+
+    private final RecentRecordIndex recentRecordIndex;
+
+    /**
+     * Recently ingested records for an MSISDN, served from memory
+     * @param msisdn the MSISDN digits
+     * @param minutes how far back to look, capped at the index retention window
+     * @return matching records, newest first
+     */
+    @GetMapping("/msisdn/{msisdn}")
+    public List<RecentRecordIndex.RecentRecord> findByMsisdn(@PathVariable String msisdn,
+                                                             @RequestParam(defaultValue = "60") long minutes) {
+        return recentRecordIndex.findByMsisdn(msisdn, minutes);
+    }
+
+    /**
+     * Recently ingested records for an IMSI, served from memory
+     * @param imsi the IMSI digits
+     * @param minutes how far back to look, capped at the index retention window
+     * @return matching records, newest first
+     */
+    @GetMapping("/imsi/{imsi}")
+    public List<RecentRecordIndex.RecentRecord> findByImsi(@PathVariable String imsi,
+                                                           @RequestParam(defaultValue = "60") long minutes) {
+        return recentRecordIndex.findByImsi(imsi, minutes);
+    }
+}
@@ -0,0 +1,32 @@
+package com.assessment.fileloader.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One batch of records sent to the database or the spool. The event duration is the write latency.
+ */
+@Name("com.assessment.fileloader.BatchPersisted")
+@Label("Batch Persisted")
+@Category({"File Loader", "Persistence"})
+@Description("Write of a batch of call detail records")
+@StackTrace(false)
+public class BatchPersistedEvent extends jdk.jfr.Event {
+
+    public static final String JPA = "JPA";
+    public static final String JDBC = "JDBC";
+    public static final String SPOOL = "SPOOL";
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Target")
+    @Description("JPA, JDBC or SPOOL")
+    public String target;
+}
@@ -0,0 +1,30 @@
+package com.assessment.fileloader.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One scan of a source's input directory, from listing the files to queueing the new ones.
+ */
+@Name("com.assessment.fileloader.DirectoryScan")
+@Label("Directory Scan")
+@Category({"File Loader", "Monitoring"})
+@Description("Scan of an input directory for new files")
+@StackTrace(false)
+public class DirectoryScanEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Directory")
+    public String directory;
+
+    @Label("Files Found")
+    public int filesFound;
+
+    @Label("New Files")
+    public int newFiles;
+}
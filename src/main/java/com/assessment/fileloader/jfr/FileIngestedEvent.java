@@ -0,0 +1,44 @@
+package com.assessment.fileloader.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Processing of a single file, from fingerprinting until it has been loaded, spooled or skipped.
+ */
+@Name("com.assessment.fileloader.FileIngested")
+@Label("File Ingested")
+@Category({"File Loader", "Processing"})
+@Description("Processing of a single input file")
+@StackTrace(false)
+public class FileIngestedEvent extends jdk.jfr.Event {
+
+    public static final String LOADED = "LOADED";
+    public static final String SPOOLED = "SPOOLED";
+    public static final String DUPLICATE = "DUPLICATE";
+    public static final String FAILED = "FAILED";
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Lines")
+    public int lines;
+
+    @Label("Success Count")
+    public int successCount;
+
+    @Label("Failed Count")
+    public int failedCount;
+
+    @Label("Outcome")
+    @Description("LOADED, SPOOLED, DUPLICATE or FAILED")
+    public String outcome;
+}
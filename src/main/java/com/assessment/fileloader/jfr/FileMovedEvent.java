@@ -0,0 +1,31 @@
+package com.assessment.fileloader.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Move of a processed file to its processed directory, including the copy-and-delete fallback.
+ */
+@Name("com.assessment.fileloader.FileMoved")
+@Label("File Moved")
+@Category({"File Loader", "Processing"})
+@Description("Move of a file to the processed directory")
+@StackTrace(false)
+public class FileMovedEvent extends jdk.jfr.Event {
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("Target")
+    public String target;
+
+    @Label("Copied")
+    @Description("The move failed and the file was copied instead")
+    public boolean copied;
+
+    @Label("Success")
+    public boolean success;
+}
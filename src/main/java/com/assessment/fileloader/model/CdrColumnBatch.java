@@ -0,0 +1,411 @@
+package com.assessment.fileloader.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Column-oriented buffer of call detail records used by the bulk-load path.
+ *
+ * Numeric fields are held in primitive arrays with a null bitmap per column, timestamps are held
+ * as local epoch milliseconds, and repeated low-cardinality strings are served from a small pool
+ * of reusable slots. A batch is filled row by row straight from the raw line and can be cleared
+ * and reused, so no CallDetailRecord entity is created for rows loaded this way.
+ *
+ * A row is only visible once commitRow() is called; if parsing fails half way through a row the
+ * partially written values are simply overwritten by the next beginRow().
+ */
+public class CdrColumnBatch {
+
+    // Integer columns
+    public static final int L_SPC = 0;
+    public static final int L_SSN = 1;
+    public static final int L_RI = 2;
+    public static final int L_GT_I = 3;
+    public static final int R_SPC = 4;
+    public static final int R_SSN = 5;
+    public static final int R_RI = 6;
+    public static final int R_GT_I = 7;
+    public static final int OR_NATURE = 8;
+    public static final int OR_PLAN = 9;
+    public static final int DE_NATURE = 10;
+    public static final int DE_PLAN = 11;
+    public static final int ISDN_NATURE = 12;
+    public static final int ISDN_PLAN = 13;
+    public static final int VLR_NATURE = 14;
+    public static final int VLR_PLAN = 15;
+    public static final int INT_COLUMNS = 16;
+
+    // Long columns (timestamps are stored as local epoch milliseconds)
+    public static final int RECORD_DATE = 0;
+    public static final int TSTAMP = 1;
+    public static final int LOCAL_DIALOG_ID = 2;
+    public static final int REMOTE_DIALOG_ID = 3;
+    public static final int DIALOG_DURATION = 4;
+    public static final int LONG_COLUMNS = 5;
+
+    // String columns
+    public static final int L_GT_DIGITS = 0;
+    public static final int R_GT_DIGITS = 1;
+    public static final int SERVICE_CODE = 2;
+    public static final int OR_DIGITS = 3;
+    public static final int DE_DIGITS = 4;
+    public static final int MSISDN = 5;
+    public static final int VLR_DIGITS = 6;
+    public static final int IMSI = 7;
+    public static final int STATUS = 8;
+    public static final int TYPE = 9;
+    public static final int USSD_STRING = 10;
+    public static final int RECORD_UNIQUE_ID = 11;
+    public static final int STRING_COLUMNS = 12;
+
+    // Columns whose values repeat across rows and are worth serving from the string pool
+    private static final boolean[] POOLED_STRING_COLUMNS = new boolean[STRING_COLUMNS];
+
+    static {
+        POOLED_STRING_COLUMNS[L_GT_DIGITS] = true;
+        POOLED_STRING_COLUMNS[R_GT_DIGITS] = true;
+        POOLED_STRING_COLUMNS[SERVICE_CODE] = true;
+        POOLED_STRING_COLUMNS[OR_DIGITS] = true;
+        POOLED_STRING_COLUMNS[STATUS] = true;
+        POOLED_STRING_COLUMNS[TYPE] = true;
+        POOLED_STRING_COLUMNS[USSD_STRING] = true;
+    }
+
+    private static final int STRING_POOL_SLOTS = 1024;
+
+    private final int capacity;
+    private final int[][] ints;
+    private final long[][] longs;
+    private final String[][] strings;
+    private final long[][] intNulls;
+    private final long[][] longNulls;
+    private final String[] stringPool = new String[STRING_POOL_SLOTS];
+    private int size;
+
+    public CdrColumnBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        int words = (capacity + 63) >>> 6;
+        this.ints = new int[INT_COLUMNS][capacity];
+        this.longs = new long[LONG_COLUMNS][capacity];
+        this.strings = new String[STRING_COLUMNS][capacity];
+        this.intNulls = new long[INT_COLUMNS][words];
+        this.longNulls = new long[LONG_COLUMNS][words];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Drop all rows so the batch can be refilled. The string pool is kept across clears.
+     */
+    public void clear() {
+        for (int c = 0; c < STRING_COLUMNS; c++) {
+            Arrays.fill(strings[c], 0, size, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Start writing a new row at position size(). Every column starts out as null.
+     */
+    public void beginRow() {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full: " + capacity);
+        }
+        int word = size >>> 6;
+        long bit = 1L << size;
+        for (int c = 0; c < INT_COLUMNS; c++) {
+            intNulls[c][word] |= bit;
+        }
+        for (int c = 0; c < LONG_COLUMNS; c++) {
+            longNulls[c][word] |= bit;
+        }
+        for (int c = 0; c < STRING_COLUMNS; c++) {
+            strings[c][size] = null;
+        }
+    }
+
+    /**
+     * Make the row started by beginRow() part of the batch.
+     */
+    public void commitRow() {
+        size++;
+    }
+
+    public void setInt(int column, int value) {
+        ints[column][size] = value;
+        intNulls[column][size >>> 6] &= ~(1L << size);
+    }
+
+    public void setLong(int column, long value) {
+        longs[column][size] = value;
+        longNulls[column][size >>> 6] &= ~(1L << size);
+    }
+
+    public void setString(int column, String value) {
+        strings[column][size] = value;
+    }
+
+    /*
+     * Parse an integer from line[start, end) without creating a substring. Blank or malformed
+     * values leave the column null, the same as parseIntOrNull on the entity path.
+     */
+    public void putInt(int column, String line, int start, int end) {
+        long value = parseDigits(line, start, end);
+        if (value != Long.MIN_VALUE && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            setInt(column, (int) value);
+        }
+    }
+
+    /*
+     * Parse a long from line[start, end). Blank or malformed values leave the column null.
+     */
+    public void putLong(int column, String line, int start, int end) {
+        long value = parseDigits(line, start, end);
+        if (value != Long.MIN_VALUE) {
+            setLong(column, value);
+        }
+    }
+
+    /*
+     * Store line[start, end) as-is. Low-cardinality columns are looked up in the string pool first
+     * so repeated values share one String instance instead of a fresh substring per row.
+     */
+    public void putString(int column, String line, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            setString(column, "");
+            return;
+        }
+        if (!POOLED_STRING_COLUMNS[column]) {
+            setString(column, line.substring(start, end));
+            return;
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (STRING_POOL_SLOTS - 1);
+        String pooled = stringPool[slot];
+        if (pooled == null || pooled.length() != length || !line.regionMatches(start, pooled, 0, length)) {
+            pooled = line.substring(start, end);
+            stringPool[slot] = pooled;
+        }
+        setString(column, pooled);
+    }
+
+    /*
+     * Parse a timestamp in the format "yyyy-MM-dd HH:mm:ss?SSS", where ? is the given fraction
+     * separator, into local epoch milliseconds.
+     *
+     * Values are resolved the same way as DateTimeFormatter.ofPattern does by default (SMART): a day
+     * of 29 to 31 past the end of its month is moved back to the last day of the month, and
+     * 24:00:00.000 is midnight at the start of the next day.
+     *
+     * @throws IllegalArgumentException if the value is not a valid timestamp
+     */
+    public void putTimestamp(int column, String line, int start, int end, char fractionSeparator) {
+        if (end - start != 23
+                || line.charAt(start + 4) != '-' || line.charAt(start + 7) != '-'
+                || line.charAt(start + 10) != ' ' || line.charAt(start + 13) != ':'
+                || line.charAt(start + 16) != ':' || line.charAt(start + 19) != fractionSeparator) {
+            throw new IllegalArgumentException("Invalid timestamp: " + line.substring(start, end));
+        }
+        int year = fixedDigits(line, start, 4);
+        int month = fixedDigits(line, start + 5, 2);
+        int day = fixedDigits(line, start + 8, 2);
+        int hour = fixedDigits(line, start + 11, 2);
+        int minute = fixedDigits(line, start + 14, 2);
+        int second = fixedDigits(line, start + 17, 2);
+        int millis = fixedDigits(line, start + 20, 3);
+        boolean endOfDay = hour == 24 && minute == 0 && second == 0 && millis == 0;
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || (hour > 23 && !endOfDay) || minute < 0 || minute > 59
+                || second < 0 || second > 59 || millis < 0) {
+            throw new IllegalArgumentException("Invalid timestamp: " + line.substring(start, end));
+        }
+        day = Math.min(day, lengthOfMonth(year, month));
+        long seconds = epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        setLong(column, seconds * 1000L + millis);
+    }
+
+    public boolean isIntNull(int column, int row) {
+        return (intNulls[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    public boolean isLongNull(int column, int row) {
+        return (longNulls[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    public int getInt(int column, int row) {
+        return ints[column][row];
+    }
+
+    public long getLong(int column, int row) {
+        return longs[column][row];
+    }
+
+    public String getString(int column, int row) {
+        return strings[column][row];
+    }
+
+    /**
+     * Convert a timestamp column back into a LocalDateTime for binding, or null if unset.
+     */
+    public LocalDateTime getTimestamp(int column, int row) {
+        if (isLongNull(column, row)) {
+            return null;
+        }
+        long millis = longs[column][row];
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Serialize the committed rows column by column: row count, then for every numeric column its
+     * null bitmap and values, then every string column as length-prefixed UTF-8 (-1 for null).
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        int words = (size + 63) >>> 6;
+        for (int c = 0; c < INT_COLUMNS; c++) {
+            for (int w = 0; w < words; w++) out.writeLong(intNulls[c][w]);
+            for (int row = 0; row < size; row++) out.writeInt(ints[c][row]);
+        }
+        for (int c = 0; c < LONG_COLUMNS; c++) {
+            for (int w = 0; w < words; w++) out.writeLong(longNulls[c][w]);
+            for (int row = 0; row < size; row++) out.writeLong(longs[c][row]);
+        }
+        for (int c = 0; c < STRING_COLUMNS; c++) {
+            for (int row = 0; row < size; row++) {
+                String value = strings[c][row];
+                if (value == null) {
+                    out.writeInt(-1);
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a batch written by writeTo. The batch is sized to exactly the rows read.
+     */
+    public static CdrColumnBatch readFrom(DataInput in) throws IOException {
+        int rows = in.readInt();
+        if (rows < 0) {
+            throw new IOException("Invalid batch row count: " + rows);
+        }
+        CdrColumnBatch batch = new CdrColumnBatch(Math.max(rows, 1));
+        int words = (rows + 63) >>> 6;
+        for (int c = 0; c < INT_COLUMNS; c++) {
+            for (int w = 0; w < words; w++) batch.intNulls[c][w] = in.readLong();
+            for (int row = 0; row < rows; row++) batch.ints[c][row] = in.readInt();
+        }
+        for (int c = 0; c < LONG_COLUMNS; c++) {
+            for (int w = 0; w < words; w++) batch.longNulls[c][w] = in.readLong();
+            for (int row = 0; row < rows; row++) batch.longs[c][row] = in.readLong();
+        }
+        for (int c = 0; c < STRING_COLUMNS; c++) {
+            for (int row = 0; row < rows; row++) {
+                int length = in.readInt();
+                if (length >= 0) {
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    batch.strings[c][row] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        batch.size = rows;
+        return batch;
+    }
+
+    // Returns Long.MIN_VALUE for blank, malformed or overflowing input
+    private static long parseDigits(String line, int start, int end) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) end--;
+        if (start == end) {
+            return Long.MIN_VALUE;
+        }
+        boolean negative = false;
+        char first = line.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                return Long.MIN_VALUE;
+            }
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Returns -1 if any character is not a digit
+    private static int fixedDigits(String line, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // Same calculation as LocalDate.toEpochDay, without creating the LocalDate
+    private static long epochDay(long year, int month, int day) {
+        long total = 365 * year;
+        if (year >= 0) {
+            total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        } else {
+            total -= year / -4 - year / -100 + year / -400;
+        }
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!(year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+                total--;
+            }
+        }
+        return total - 719528;
+    }
+}
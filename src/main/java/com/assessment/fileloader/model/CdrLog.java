@@ -7,7 +7,10 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "cdr_logs")
+@Table(name = "cdr_logs", indexes = {
+        @Index(name = "idx_cdr_logs_file_name", columnList = "file_name"),
+        @Index(name = "idx_cdr_logs_content_hash", columnList = "content_hash")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -31,4 +34,11 @@ public class CdrLog {
 
     @Column(name = "failed_count")
     private Integer failedCount;
+
+    // XXH64 of the file content, see ContentFingerprint. Only set for loaded files
+    @Column(name = "content_hash")
+    private Long contentHash;
+
+    @Column(name = "file_size")
+    private Long fileSize;
 }
@@ -0,0 +1,116 @@
+package com.assessment.fileloader.repository;
+
+import com.assessment.fileloader.model.CdrColumnBatch;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static com.assessment.fileloader.model.CdrColumnBatch.*;
+
+/**
+ * Writes a CdrColumnBatch to call_detail_records with a single JDBC batch insert, binding values
+ * straight from the column arrays. Runs inside the caller's transaction.
+ */
+@Repository
+public class CdrColumnBatchWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO call_detail_records ("
+            + "record_date, l_spc, l_ssn, l_ri, l_gt_i, l_gt_digits, "
+            + "r_spc, r_ssn, r_ri, r_gt_i, r_gt_digits, service_code, "
+            + "or_nature, or_plan, or_digits, de_nature, de_plan, de_digits, "
+            + "isdn_nature, isdn_plan, msisdn, vlr_nature, vlr_plan, vlr_digits, "
+            + "imsi, status, type, tstamp, local_dialog_id, remote_dialog_id, "
+            + "dialog_duration, ussd_string, record_unique_id"
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CdrColumnBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert every row of the batch
+     * @param batch the rows to insert
+     * @return the number of rows sent to the database
+     */
+    public int write(CdrColumnBatch batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int row) throws SQLException {
+                bindTimestamp(ps, 1, batch, RECORD_DATE, row);
+                bindInt(ps, 2, batch, L_SPC, row);
+                bindInt(ps, 3, batch, L_SSN, row);
+                bindInt(ps, 4, batch, L_RI, row);
+                bindInt(ps, 5, batch, L_GT_I, row);
+                ps.setString(6, batch.getString(L_GT_DIGITS, row));
+                bindInt(ps, 7, batch, R_SPC, row);
+                bindInt(ps, 8, batch, R_SSN, row);
+                bindInt(ps, 9, batch, R_RI, row);
+                bindInt(ps, 10, batch, R_GT_I, row);
+                ps.setString(11, batch.getString(R_GT_DIGITS, row));
+                ps.setString(12, batch.getString(SERVICE_CODE, row));
+                bindInt(ps, 13, batch, OR_NATURE, row);
+                bindInt(ps, 14, batch, OR_PLAN, row);
+                ps.setString(15, batch.getString(OR_DIGITS, row));
+                bindInt(ps, 16, batch, DE_NATURE, row);
+                bindInt(ps, 17, batch, DE_PLAN, row);
+                ps.setString(18, batch.getString(DE_DIGITS, row));
+                bindInt(ps, 19, batch, ISDN_NATURE, row);
+                bindInt(ps, 20, batch, ISDN_PLAN, row);
+                ps.setString(21, batch.getString(MSISDN, row));
+                bindInt(ps, 22, batch, VLR_NATURE, row);
+                bindInt(ps, 23, batch, VLR_PLAN, row);
+                ps.setString(24, batch.getString(VLR_DIGITS, row));
+                ps.setString(25, batch.getString(IMSI, row));
+                ps.setString(26, batch.getString(STATUS, row));
+                ps.setString(27, batch.getString(TYPE, row));
+                bindTimestamp(ps, 28, batch, TSTAMP, row);
+                bindLong(ps, 29, batch, LOCAL_DIALOG_ID, row);
+                bindLong(ps, 30, batch, REMOTE_DIALOG_ID, row);
+                bindLong(ps, 31, batch, DIALOG_DURATION, row);
+                ps.setString(32, batch.getString(USSD_STRING, row));
+                ps.setString(33, batch.getString(RECORD_UNIQUE_ID, row));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+
+        return batch.size();
+    }
+
+    private static void bindTimestamp(PreparedStatement ps, int index, CdrColumnBatch batch, int column, int row) throws SQLException {
+        if (batch.isLongNull(column, row)) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setObject(index, batch.getTimestamp(column, row));
+        }
+    }
+
+    private static void bindInt(PreparedStatement ps, int index, CdrColumnBatch batch, int column, int row) throws SQLException {
+        if (batch.isIntNull(column, row)) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, batch.getInt(column, row));
+        }
+    }
+
+    private static void bindLong(PreparedStatement ps, int index, CdrColumnBatch batch, int column, int row) throws SQLException {
+        if (batch.isLongNull(column, row)) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, batch.getLong(column, row));
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.assessment.fileloader.model.CdrLog;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CdrLogRepository extends JpaRepository<CdrLog, Long> {
 
@@ -13,4 +16,19 @@ public interface CdrLogRepository extends JpaRepository<CdrLog, Long> {
      * @return true if the file has been processed, false otherwise
      */
     boolean existsByFileName(String fileName);
+
+    /**
+     * Find a previously loaded file with the same content, whatever its name
+     * @param contentHash the content fingerprint of the file
+     * @param fileSize the size of the file in bytes
+     * @return the log entry of the earliest matching file, if any
+     */
+    Optional<CdrLog> findFirstByContentHashAndFileSizeOrderByIdAsc(Long contentHash, Long fileSize);
+
+    /**
+     * Find all log entries for a file name
+     * @param fileName the name of the file
+     * @return the matching log entries
+     */
+    List<CdrLog> findByFileName(String fileName);
 }
@@ -0,0 +1,272 @@
+package com.assessment.fileloader.service;
+
+import com.assessment.fileloader.model.CdrLog;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * One-shot bulk load of a historical archive. Every matching file under the root directory is
+ * loaded through the columnar JDBC path on a pool of worker threads.
+ *
+ * Files are left where they are. Each file's rows and its CdrLog entry are committed together, and
+ * names and content that were already loaded are skipped, so an interrupted backfill can be run again.
+ *
+ * When secondary indexes are dropped for the run, their definitions are first written to the index
+ * file. If the process dies before they are rebuilt, the next backfill run rebuilds them from there.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BackfillService {
+
+    private static final String CDR_TABLE = "call_detail_records";
+    private static final int PROGRESS_INTERVAL = 500;
+    private static final String INDEX_FILE_HEADER =
+            "-- Indexes dropped by a backfill run. The next backfill run rebuilds them, or run this file by hand.";
+
+    // Indexes on call_detail_records that do not back a primary key or unique constraint
+    private static final String SECONDARY_INDEXES_SQL = "SELECT i.schemaname, i.indexname, i.indexdef FROM pg_indexes i "
+            + "WHERE i.tablename = ? AND i.schemaname = current_schema() "
+            + "AND NOT EXISTS (SELECT 1 FROM pg_constraint c "
+            + "WHERE c.conindid = (quote_ident(i.schemaname) || '.' || quote_ident(i.indexname))::regclass)";
+
+    private final FileProcessingService fileProcessingService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${backfill.file-pattern:*}")
+    private String filePattern;
+
+    @Value("${backfill.threads:0}")
+    private int threads;
+
+    @Value("${backfill.drop-indexes:false}")
+    private boolean dropIndexes;
+
+    @Value("${backfill.index-file:backfill-dropped-indexes.sql}")
+    private String indexFile;
+
+    /**
+     * Load every matching file below a directory
+     * @param root the top of the archive tree
+     * @return counts and timings of the run
+     */
+    public BackfillSummary backfill(Path root) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        List<File> files = findFiles(root);
+        log.info("Backfilling {} files from {}", files.size(), root);
+
+        // Indexes an earlier run dropped and never got to rebuild
+        List<String> saved = readSavedIndexes();
+        if (!saved.isEmpty()) {
+            log.warn("Found {} indexes dropped by an unfinished backfill in {}", saved.size(), indexFile);
+        }
+
+        List<String> dropped = List.of();
+        if (dropIndexes) {
+            dropped = dropSecondaryIndexes(saved);
+        } else if (!saved.isEmpty()) {
+            rebuildIndexes(saved);
+        }
+
+        try {
+            BackfillSummary summary = loadAll(files, start);
+            log.info("Backfill finished: {}", summary);
+            return summary;
+        } finally {
+            if (!dropped.isEmpty()) {
+                rebuildIndexes(dropped);
+            }
+        }
+    }
+
+    private List<File> findFiles(Path root) throws IOException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + filePattern);
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(path.getFileName()))
+                    .sorted()
+                    .map(Path::toFile)
+                    .toList();
+        }
+    }
+
+    private BackfillSummary loadAll(List<File> files, long start) throws InterruptedException {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        CompletionService<Optional<CdrLog>> completion = new ExecutorCompletionService<>(pool);
+        Set<ContentFingerprint.Fingerprint> claimed = ConcurrentHashMap.newKeySet();
+
+        for (File file : files) {
+            completion.submit(() -> loadFile(file, claimed));
+        }
+
+        int loaded = 0;
+        int skipped = 0;
+        int failed = 0;
+        long records = 0;
+        long failedRecords = 0;
+        long bytes = 0;
+
+        try {
+            for (int i = 1; i <= files.size(); i++) {
+                try {
+                    Optional<CdrLog> result = completion.take().get();
+                    if (result.isPresent()) {
+                        CdrLog cdrLog = result.get();
+                        loaded++;
+                        records += cdrLog.getSuccessCount();
+                        failedRecords += cdrLog.getFailedCount();
+                        bytes += cdrLog.getFileSize();
+                    } else {
+                        skipped++;
+                    }
+                } catch (ExecutionException e) {
+                    // Nothing is committed for a failed file, so the next run picks it up again
+                    log.error("Error backfilling file", e.getCause());
+                    failed++;
+                }
+
+                if (i % PROGRESS_INTERVAL == 0) {
+                    log.info("Backfill progress: {} of {} files", i, files.size());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new BackfillSummary(files.size(), loaded, skipped, failed, records, failedRecords, bytes,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Optional<CdrLog> loadFile(File file, Set<ContentFingerprint.Fingerprint> claimed) throws IOException {
+        if (fileProcessingService.hasBeenProcessed(file.getName()) && !fileProcessingService.isNameCollision(file)) {
+            log.info("Skipping already processed file: {}", file.getName());
+            return Optional.empty();
+        }
+
+        try {
+            return fileProcessingService.loadForBackfill(file, claimed);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Could not load " + file, e);
+        }
+    }
+
+    /*
+     * Drop the secondary indexes, after saving their definitions together with any still pending from
+     * an earlier run, and return every definition to rebuild at the end.
+     */
+    private List<String> dropSecondaryIndexes(List<String> saved) throws IOException {
+        List<IndexDefinition> indexes = jdbcTemplate.query(SECONDARY_INDEXES_SQL,
+                (rs, rowNum) -> new IndexDefinition(rs.getString(1), rs.getString(2), rs.getString(3)), CDR_TABLE);
+
+        Set<String> definitions = new LinkedHashSet<>(saved);
+        indexes.forEach(index -> definitions.add(createIfNotExists(index.definition())));
+        if (!definitions.isEmpty()) {
+            saveIndexes(List.copyOf(definitions));
+        }
+
+        for (IndexDefinition index : indexes) {
+            log.warn("Dropping index {} until the backfill is done: {}", index.name(), index.definition());
+            jdbcTemplate.execute("DROP INDEX " + quote(index.schema()) + "." + quote(index.name()));
+        }
+        return List.copyOf(definitions);
+    }
+
+    private void rebuildIndexes(List<String> definitions) throws IOException {
+        for (String definition : definitions) {
+            long start = System.currentTimeMillis();
+            jdbcTemplate.execute(definition);
+            log.info("Rebuilt index in {} ms: {}", System.currentTimeMillis() - start, definition);
+        }
+        Files.deleteIfExists(Paths.get(indexFile));
+    }
+
+    private List<String> readSavedIndexes() throws IOException {
+        Path path = Paths.get(indexFile);
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+        return Files.readAllLines(path).stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("--"))
+                .map(line -> line.endsWith(";") ? line.substring(0, line.length() - 1) : line)
+                .toList();
+    }
+
+    /*
+     * Write the file in full next to the target and move it into place, so a crash never leaves a
+     * half-written list behind.
+     */
+    private void saveIndexes(List<String> definitions) throws IOException {
+        Path path = Paths.get(indexFile).toAbsolutePath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        List<String> lines = new ArrayList<>();
+        lines.add(INDEX_FILE_HEADER);
+        definitions.forEach(definition -> lines.add(definition + ";"));
+        Files.write(temp, lines);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.warn("Saved {} index definitions to {}", definitions.size(), path);
+    }
+
+    // Rebuilding is safe to repeat if a run dies half way through it
+    private static String createIfNotExists(String definition) {
+        return definition.replaceFirst("^CREATE (UNIQUE )?INDEX ", "CREATE $1INDEX IF NOT EXISTS ");
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private record IndexDefinition(String schema, String name, String definition) {
+    }
+
+    /**
+     * Outcome of a backfill run
+     */
+    public record BackfillSummary(int filesFound, int filesLoaded, int filesSkipped, int filesFailed,
+                                  long recordsLoaded, long recordsFailed, long bytes, long elapsedMillis) {
+
+        public double recordsPerSecond() {
+            return elapsedMillis == 0 ? 0 : recordsLoaded * 1000.0 / elapsedMillis;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedMillis == 0 ? 0 : bytes * 1000.0 / elapsedMillis / (1024 * 1024);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files found, %d loaded, %d skipped, %d failed; %d records loaded, %d failed; "
+                            + "%.1f MB in %.1f s (%.0f records/s, %.1f MB/s)",
+                    filesFound, filesLoaded, filesSkipped, filesFailed, recordsLoaded, recordsFailed,
+                    bytes / (1024.0 * 1024), elapsedMillis / 1000.0, recordsPerSecond(), megabytesPerSecond());
+        }
+    }
+}
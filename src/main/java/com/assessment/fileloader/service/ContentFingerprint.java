@@ -0,0 +1,175 @@
+package com.assessment.fileloader.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 64-bit XXH64 fingerprint of a file's content.
+ *
+ * The file is read with plain channel reads into a per-thread direct buffer rather than memory
+ * mapped: a mapping keeps the file open until it is garbage collected, and on Windows that blocks
+ * moving the file to the processed directory right after it was fingerprinted.
+ *
+ * Files larger than the sample threshold are not hashed in full: the fingerprint then covers the
+ * file size and SAMPLE_COUNT evenly spaced SAMPLE_BYTES windows, including the first and last
+ * bytes of the file. Two files with the same fingerprint and size are treated as the same content.
+ */
+public final class ContentFingerprint {
+
+    private static final int READ_BUFFER_BYTES = 1024 * 1024;
+    private static final int SAMPLE_COUNT = 16;
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_BYTES));
+
+    private ContentFingerprint() {
+    }
+
+    /**
+     * @param file the file to fingerprint
+     * @param sampleThreshold files larger than this many bytes are sampled; 0 always hashes in full
+     * @return the content hash and size of the file
+     */
+    public static Fingerprint of(Path file, long sampleThreshold) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            XxHash64 hash = new XxHash64();
+
+            if (sampleThreshold <= 0 || size <= Math.max(sampleThreshold, (long) SAMPLE_COUNT * SAMPLE_BYTES)) {
+                read(channel, 0, size, hash);
+            } else {
+                hash.update(ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, size));
+                long step = (size - SAMPLE_BYTES) / (SAMPLE_COUNT - 1);
+                for (int i = 0; i < SAMPLE_COUNT; i++) {
+                    read(channel, i * step, SAMPLE_BYTES, hash);
+                }
+            }
+
+            return new Fingerprint(hash.digest(), size);
+        }
+    }
+
+    /*
+     * Feed channel[position, position + length) into the hash
+     */
+    private static void read(FileChannel channel, long position, long length, XxHash64 hash) throws IOException {
+        ByteBuffer buffer = READ_BUFFER.get();
+        long end = position + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new EOFException("File shrank while it was being fingerprinted");
+                }
+            }
+            buffer.flip();
+            hash.update(buffer);
+            position += buffer.limit();
+        }
+    }
+
+    public record Fingerprint(long hash, long size) {
+    }
+
+    /*
+     * Streaming XXH64 with seed 0, see https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md
+     */
+    static final class XxHash64 {
+
+        private static final long PRIME1 = 0x9E3779B185EBCA87L;
+        private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long PRIME3 = 0x165667B19E3779F9L;
+        private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+        private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+        private long v1 = PRIME1 + PRIME2;
+        private long v2 = PRIME2;
+        private long v3 = 0;
+        private long v4 = -PRIME1;
+        private final ByteBuffer pending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        private long totalLength;
+
+        void update(ByteBuffer input) {
+            ByteBuffer data = input.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            totalLength += data.remaining();
+
+            // Complete a stripe left over from the previous update
+            if (pending.position() > 0) {
+                while (pending.hasRemaining() && data.hasRemaining()) {
+                    pending.put(data.get());
+                }
+                if (pending.hasRemaining()) {
+                    return;
+                }
+                pending.flip();
+                stripe(pending);
+                pending.clear();
+            }
+
+            while (data.remaining() >= 32) {
+                stripe(data);
+            }
+            pending.put(data);
+        }
+
+        long digest() {
+            long hash;
+            if (totalLength >= 32) {
+                hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                hash = mergeRound(hash, v1);
+                hash = mergeRound(hash, v2);
+                hash = mergeRound(hash, v3);
+                hash = mergeRound(hash, v4);
+            } else {
+                hash = PRIME5;
+            }
+            hash += totalLength;
+
+            ByteBuffer tail = pending.duplicate().flip().order(ByteOrder.LITTLE_ENDIAN);
+            while (tail.remaining() >= 8) {
+                hash ^= round(0, tail.getLong());
+                hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            }
+            if (tail.remaining() >= 4) {
+                hash ^= (tail.getInt() & 0xFFFFFFFFL) * PRIME1;
+                hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            }
+            while (tail.hasRemaining()) {
+                hash ^= (tail.get() & 0xFFL) * PRIME5;
+                hash = Long.rotateLeft(hash, 11) * PRIME1;
+            }
+
+            hash ^= hash >>> 33;
+            hash *= PRIME2;
+            hash ^= hash >>> 29;
+            hash *= PRIME3;
+            hash ^= hash >>> 32;
+            return hash;
+        }
+
+        private void stripe(ByteBuffer data) {
+            v1 = round(v1, data.getLong());
+            v2 = round(v2, data.getLong());
+            v3 = round(v3, data.getLong());
+            v4 = round(v4, data.getLong());
+        }
+
+        private static long round(long acc, long input) {
+            acc += input * PRIME2;
+            acc = Long.rotateLeft(acc, 31);
+            return acc * PRIME1;
+        }
+
+        private static long mergeRound(long acc, long value) {
+            acc ^= round(0, value);
+            return acc * PRIME1 + PRIME4;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.assessment.fileloader.service;
 
+import com.assessment.fileloader.config.FileSourceProperties;
+import com.assessment.fileloader.jfr.DirectoryScanEvent;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,74 +11,211 @@ import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class FileMonitoringService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileMonitoringService.class);
 
+    private static final String DEFAULT_SOURCE = "default";
+
     @Value("${file.monitoring.directory}")
     private String monitoringDirectory;
 
     @Value("${file.monitoring.processed-directory}")
     private String processedDirectory;
 
+    @Value("${file.monitoring.worker-threads:1}")
+    private int workerThreads;
+
     private final FileProcessingService fileProcessingService;
+    private final FileSourceProperties fileSourceProperties;
 
-    public FileMonitoringService(FileProcessingService fileProcessingService) {
+    // Long-lived queue of files waiting for or holding a worker slot, created on the first scan
+    private WeightedFairScheduler<File> scheduler;
+    private Map<String, FileSourceProperties.Source> sources;
+    private ExecutorService workerPool;
+
+    public FileMonitoringService(FileProcessingService fileProcessingService, FileSourceProperties fileSourceProperties) {
         this.fileProcessingService = fileProcessingService;
+        this.fileSourceProperties = fileSourceProperties;
     }
 
+    /*
+     * Scans every source and queues files not seen before. Queued files are handed to the worker
+     * pool as slots free up, so a scan never waits for earlier files to finish and files from a quiet
+     * source join the same weighted queue as the backlog of a busy one.
+     */
     @Scheduled(fixedRateString = "${file.monitoring.interval}")
     public void monitorDirectory() {
-        logger.info("Checking directory for new files: {}", monitoringDirectory);
+        WeightedFairScheduler<File> fileScheduler = scheduler();
+
+        for (FileSourceProperties.Source source : sources.values()) {
+            try {
+                queueNewFiles(source, fileScheduler);
+            } catch (RuntimeException e) {
+                logger.error("Error scanning source: {}", source.getName(), e);
+            }
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Per-source view of the files queued, in flight and completed since startup
+     * @return one entry per configured source, empty before the first scan
+     */
+    public synchronized List<WeightedFairScheduler.SourceBacklog> getSourceBacklog() {
+        return scheduler == null ? List.of() : scheduler.backlog();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (workerPool != null) {
+            workerPool.shutdown();
+        }
+    }
+
+    private void queueNewFiles(FileSourceProperties.Source source, WeightedFairScheduler<File> fileScheduler) {
+        String directoryName = source.getDirectory();
+        logger.info("Checking directory for new files: {}", directoryName);
+
+        DirectoryScanEvent event = new DirectoryScanEvent();
+        event.begin();
 
         try {
             // Create directories if they don't exist
-            createDirectoriesIfNotExist();
+            createDirectoriesIfNotExist(source);
 
             // Get all files in the monitoring directory
-            File directory = new File(monitoringDirectory);
+            File directory = new File(directoryName);
             File[] files = directory.listFiles();
 
             if (files == null || files.length == 0) {
-                logger.info("No files found in directory: {}", monitoringDirectory);
+                logger.info("No files found in directory: {}", directoryName);
                 return;
             }
+            event.filesFound = files.length;
 
-            // Process each file that hasn't been processed before
+            // Queue each matching file that isn't already queued and hasn't been processed before, or
+            // that reuses a known name with different content
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + source.getFilePattern());
             List<File> fileList = Arrays.stream(files)
                     .filter(File::isFile)
-                    .filter(file -> !fileProcessingService.hasBeenProcessed(file.getName()))
+                    .filter(file -> matcher.matches(Paths.get(file.getName())))
+                    .filter(file -> !fileScheduler.isPending(file))
+                    .filter(file -> !fileProcessingService.hasBeenProcessed(file.getName())
+                            || fileProcessingService.isNameCollision(file))
                     .toList();
 
-            logger.info("Found {} new files to process", fileList.size());
+            logger.info("Found {} new files to process from source: {}", fileList.size(), source.getName());
+            event.newFiles = fileList.size();
 
             for (File file : fileList) {
-                fileProcessingService.processFile(file, processedDirectory);
+                fileScheduler.submit(source.getName(), file);
             }
 
         } catch (IOException e) {
-            logger.error("Error monitoring directory: {}", monitoringDirectory, e);
+            logger.error("Error monitoring directory: {}", directoryName, e);
+        } finally {
+            if (event.shouldCommit()) {
+                event.source = source.getName();
+                event.directory = directoryName;
+                event.commit();
+            }
         }
     }
 
-    private void createDirectoriesIfNotExist() throws IOException {
-        Path monitoringPath = Paths.get(monitoringDirectory);
-        Path processedPath = Paths.get(processedDirectory);
+    /*
+     * Hands queued files to the worker pool in weighted fair order until every slot is taken. Each
+     * worker dispatches again when it finishes, so the next file starts without waiting for a scan.
+     */
+    private synchronized void dispatch() {
+        if (workerPool == null || workerPool.isShutdown()) {
+            return;
+        }
+
+        WeightedFairScheduler.Task<File> task;
+        while ((task = scheduler.poll()) != null) {
+            WeightedFairScheduler.Task<File> current = task;
+            String sourceProcessedDirectory = sources.get(current.source()).getProcessedDirectory();
+
+            workerPool.execute(() -> {
+                try {
+                    fileProcessingService.processFile(current.item(), sourceProcessedDirectory);
+                } catch (RuntimeException e) {
+                    logger.error("Error processing file {} from source: {}", current.item().getName(), current.source(), e);
+                } finally {
+                    scheduler.complete(current);
+                    dispatch();
+                }
+            });
+        }
+    }
+
+    private synchronized WeightedFairScheduler<File> scheduler() {
+        if (scheduler == null) {
+            sources = resolveSources();
+            int threads = Math.max(1, workerThreads);
+            WeightedFairScheduler<File> fileScheduler = new WeightedFairScheduler<>(threads);
+            sources.values().forEach(source ->
+                    fileScheduler.register(source.getName(), source.getWeight(), source.getMaxConcurrency()));
+            workerPool = Executors.newFixedThreadPool(threads);
+            scheduler = fileScheduler;
+        }
+        return scheduler;
+    }
+
+    /*
+     * Configured sources keyed by name, falling back to the single monitoring directory when no
+     * file.monitoring.sources entries are present.
+     */
+    private Map<String, FileSourceProperties.Source> resolveSources() {
+        Map<String, FileSourceProperties.Source> sources = new LinkedHashMap<>();
+
+        if (fileSourceProperties != null) {
+            for (FileSourceProperties.Source source : fileSourceProperties.getSources()) {
+                if (source.getName() == null) {
+                    source.setName(source.getDirectory());
+                }
+                sources.put(source.getName(), source);
+            }
+        }
+
+        if (sources.isEmpty()) {
+            FileSourceProperties.Source source = new FileSourceProperties.Source();
+            source.setName(DEFAULT_SOURCE);
+            source.setDirectory(monitoringDirectory);
+            source.setProcessedDirectory(processedDirectory);
+            source.setMaxConcurrency(Math.max(1, workerThreads));
+            sources.put(DEFAULT_SOURCE, source);
+        }
+
+        return sources;
+    }
+
+    private void createDirectoriesIfNotExist(FileSourceProperties.Source source) throws IOException {
+        Path monitoringPath = Paths.get(source.getDirectory());
+        Path processedPath = Paths.get(source.getProcessedDirectory());
 
         if (!Files.exists(monitoringPath)) {
-            logger.info("Creating monitoring directory: {}", monitoringDirectory);
+            logger.info("Creating monitoring directory: {}", source.getDirectory());
             Files.createDirectories(monitoringPath);
         }
 
         if (!Files.exists(processedPath)) {
-            logger.info("Creating processed directory: {}", processedDirectory);
+            logger.info("Creating processed directory: {}", source.getProcessedDirectory());
             Files.createDirectories(processedPath);
         }
     }
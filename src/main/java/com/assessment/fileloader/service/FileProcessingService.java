@@ -1,13 +1,22 @@
 package com.assessment.fileloader.service;
 
+import com.assessment.fileloader.jfr.BatchPersistedEvent;
+import com.assessment.fileloader.jfr.FileIngestedEvent;
+import com.assessment.fileloader.jfr.FileMovedEvent;
 import com.assessment.fileloader.model.CallDetailRecord;
+import com.assessment.fileloader.model.CdrColumnBatch;
 import com.assessment.fileloader.model.CdrLog;
 import com.assessment.fileloader.repository.CallDetailRecordRepository;
+import com.assessment.fileloader.repository.CdrColumnBatchWriter;
 import com.assessment.fileloader.repository.CdrLogRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -18,6 +27,11 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.assessment.fileloader.model.CdrColumnBatch.*;
 
 @Service
 @Slf4j
@@ -26,6 +40,22 @@ public class FileProcessingService {
 
     private final CallDetailRecordRepository callDetailRecordRepository;
     private final CdrLogRepository cdrLogRepository;
+    private final CdrColumnBatchWriter cdrColumnBatchWriter;
+    private final SpoolService spoolService;
+    private final RecentRecordIndex recentRecordIndex;
+    private final PlatformTransactionManager transactionManager;
+
+    // Number of pipe-delimited fields in a complete record
+    private static final int CDR_FIELD_COUNT = 33;
+
+    @Value("${file.processing.columnar-enabled:false}")
+    private boolean columnarEnabled;
+
+    @Value("${file.processing.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${file.dedup.sample-threshold-bytes:0}")
+    private long fingerprintSampleThreshold;
 
     /**
      * Check if a file has already been processed
@@ -33,17 +63,218 @@ public class FileProcessingService {
      * @return true if the file has been processed, false otherwise
      */
     public boolean hasBeenProcessed(String fileName) {
-        return cdrLogRepository.existsByFileName(fileName);
+        try {
+            return cdrLogRepository.existsByFileName(fileName);
+        } catch (DataAccessException e) {
+            if (!spoolService.isEnabled()) {
+                throw e;
+            }
+            // Files are moved out of the input directory once spooled, so anything still there is new
+            log.warn("Could not check whether {} was processed, treating it as new: {}", fileName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Check whether a file reuses the name of an already processed file but has different content
+     * @param file the file to check
+     * @return true if no file with this name and content has been processed before
+     */
+    public boolean isNameCollision(File file) {
+        try {
+            ContentFingerprint.Fingerprint fingerprint = ContentFingerprint.of(file.toPath(), fingerprintSampleThreshold);
+
+            // Entries logged before fingerprints were recorded have no hash and are trusted by name
+            return cdrLogRepository.findByFileName(file.getName()).stream()
+                    .noneMatch(cdrLog -> cdrLog.getContentHash() == null
+                            || (cdrLog.getContentHash() == fingerprint.hash() && Objects.equals(cdrLog.getFileSize(), fingerprint.size())));
+        } catch (IOException e) {
+            log.error("Error fingerprinting file: {}", file.getName(), e);
+            return false;
+        }
     }
 
-    @Transactional
     public void processFile(File file, String processedDirectory) {
         log.info("Processing file: {}", file.getName());
 
+        CdrLog cdrLog = new CdrLog();
+        cdrLog.setFileName(file.getName());
+        cdrLog.setUploadStartTime(LocalDateTime.now());
+        cdrLog.setSuccessCount(0);
+        cdrLog.setFailedCount(0);
+
+        FileIngestedEvent event = new FileIngestedEvent();
+        event.begin();
+        String outcome = FileIngestedEvent.FAILED;
+
+        try {
+            ContentFingerprint.Fingerprint fingerprint = ContentFingerprint.of(file.toPath(), fingerprintSampleThreshold);
+            cdrLog.setContentHash(fingerprint.hash());
+            cdrLog.setFileSize(fingerprint.size());
+
+            // Skip files whose content was already loaded under another name
+            Optional<CdrLog> original = findSameContent(file, fingerprint);
+            if (original.isPresent()) {
+                log.info("Skipping file: {}. Same content was already loaded from: {}", file.getName(), original.get().getFileName());
+                moveFileToProcessedDirectory(file, processedDirectory);
+                outcome = FileIngestedEvent.DUPLICATE;
+                return;
+            }
+
+            if (spoolService.isActive()) {
+                spoolFile(file, cdrLog);
+                outcome = FileIngestedEvent.SPOOLED;
+            } else {
+                outcome = loadFile(file, cdrLog) ? FileIngestedEvent.LOADED : FileIngestedEvent.SPOOLED;
+            }
+
+            // Move the file to processed directory
+            moveFileToProcessedDirectory(file, processedDirectory);
+
+            log.info("File processed: {}. Success: {}, Failed: {}", file.getName(), cdrLog.getSuccessCount(), cdrLog.getFailedCount());
+        } catch (IOException e) {
+            log.error("Error processing file: {}", file.getName(), e);
+            cdrLog.setUploadEndTime(LocalDateTime.now());
+            // Without a fingerprint the failure entry cannot make a resend of the same content look loaded
+            cdrLog.setContentHash(null);
+            cdrLog.setFileSize(null);
+            cdrLogRepository.save(cdrLog);
+        } finally {
+            if (event.shouldCommit()) {
+                event.fileName = file.getName();
+                event.bytes = cdrLog.getFileSize() != null ? cdrLog.getFileSize() : 0;
+                event.successCount = cdrLog.getSuccessCount();
+                event.failedCount = cdrLog.getFailedCount();
+                event.lines = event.successCount + event.failedCount;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Load a file and its CdrLog entry through the columnar path in a single transaction, without
+     * moving the file or falling back to the spool. Used by the backfill job.
+     * @param file the file to load
+     * @param claimed fingerprints already taken by other files of the same backfill run
+     * @return the saved CdrLog entry, or empty if the same content was already loaded
+     */
+    public Optional<CdrLog> loadForBackfill(File file, Set<ContentFingerprint.Fingerprint> claimed) throws IOException {
         CdrLog cdrLog = new CdrLog();
         cdrLog.setFileName(file.getName());
         cdrLog.setUploadStartTime(LocalDateTime.now());
 
+        ContentFingerprint.Fingerprint fingerprint = ContentFingerprint.of(file.toPath(), fingerprintSampleThreshold);
+        cdrLog.setContentHash(fingerprint.hash());
+        cdrLog.setFileSize(fingerprint.size());
+
+        if (!claimed.add(fingerprint)) {
+            log.info("Skipping file: {}. Same content was already loaded", file.getName());
+            return Optional.empty();
+        }
+
+        RecentRecordIndex.Staged staged = recentRecordIndex.stage();
+        try {
+            if (findSameContent(file, fingerprint).isPresent()) {
+                log.info("Skipping file: {}. Same content was already loaded", file.getName());
+                return Optional.empty();
+            }
+
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                try {
+                    readColumnar(file, cdrLog, cdrColumnBatchWriter::write, BatchPersistedEvent.JDBC, staged);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                cdrLog.setUploadEndTime(LocalDateTime.now());
+                cdrLogRepository.save(cdrLog);
+            });
+        } catch (UncheckedIOException e) {
+            // Nothing was committed, so another file with the same content may still load it
+            claimed.remove(fingerprint);
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            claimed.remove(fingerprint);
+            throw e;
+        }
+
+        recentRecordIndex.publish(staged);
+        return Optional.of(cdrLog);
+    }
+
+    private Optional<CdrLog> findSameContent(File file, ContentFingerprint.Fingerprint fingerprint) {
+        try {
+            return cdrLogRepository.findFirstByContentHashAndFileSizeOrderByIdAsc(fingerprint.hash(), fingerprint.size());
+        } catch (DataAccessException e) {
+            if (!spoolService.isEnabled()) {
+                throw e;
+            }
+            log.warn("Could not check {} for duplicate content, loading it anyway: {}", file.getName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /*
+     * Loads the file and its CdrLog entry into the database in a single transaction. If the database
+     * cannot be reached and the spool is enabled, the file is spooled instead. Other database errors,
+     * such as constraint violations, are not spooled since replaying the file would fail the same way.
+     *
+     * @return true if the file was loaded into the database, false if it was spooled
+     */
+    private boolean loadFile(File file, CdrLog cdrLog) throws IOException {
+        RecentRecordIndex.Staged staged = recentRecordIndex.stage();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                try {
+                    if (columnarEnabled) {
+                        readColumnar(file, cdrLog, cdrColumnBatchWriter::write, BatchPersistedEvent.JDBC, staged);
+                    } else {
+                        readRecords(file, cdrLog, staged);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                cdrLog.setUploadEndTime(LocalDateTime.now());
+                cdrLogRepository.save(cdrLog);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (DataAccessException | TransactionException e) {
+            if (!spoolService.isEnabled() || !SpoolService.isUnavailable(e)) {
+                throw e;
+            }
+            spoolService.markUnavailable(file.getName(), e);
+            spoolFile(file, cdrLog);
+            return false;
+        }
+
+        recentRecordIndex.publish(staged);
+        return true;
+    }
+
+    /*
+     * Parses the file into columnar batches and appends them to the local spool, to be loaded into
+     * the database later by SpoolService.
+     */
+    private void spoolFile(File file, CdrLog cdrLog) throws IOException {
+        RecentRecordIndex.Staged staged = recentRecordIndex.stage();
+        spoolService.beginFile();
+        try {
+            readColumnar(file, cdrLog, spoolService::appendBatch, BatchPersistedEvent.SPOOL, staged);
+        } catch (IOException | RuntimeException e) {
+            spoolService.abortFile();
+            throw e;
+        }
+
+        cdrLog.setUploadEndTime(LocalDateTime.now());
+        spoolService.commitFile(cdrLog);
+        recentRecordIndex.publish(staged);
+        log.info("Spooled file: {} until the database is available", file.getName());
+    }
+
+    private void readRecords(File file, CdrLog cdrLog, RecentRecordIndex.Staged staged) throws IOException {
         int successCount = 0;
         int failedCount = 0;
 
@@ -64,28 +295,85 @@ public class FileProcessingService {
 
             // Save all records in batch
             if (!records.isEmpty()) {
+                BatchPersistedEvent event = new BatchPersistedEvent();
+                event.begin();
+                long start = System.currentTimeMillis();
                 callDetailRecordRepository.saveAll(records);
+                spoolService.recordLatency(file.getName(), System.currentTimeMillis() - start);
+                commitBatchEvent(event, file, records.size(), BatchPersistedEvent.JPA);
+                staged.add(records);
             }
-
+        } finally {
             cdrLog.setSuccessCount(successCount);
             cdrLog.setFailedCount(failedCount);
-            cdrLog.setUploadEndTime(LocalDateTime.now());
-            cdrLogRepository.save(cdrLog);
+        }
+    }
 
-            // Move the file to processed directory
-            moveFileToProcessedDirectory(file, processedDirectory);
+    /*
+     * Bulk-load path: fills a reusable columnar batch and hands it to the sink whenever it is full.
+     */
+    private void readColumnar(File file, CdrLog cdrLog, BatchSink sink, String target,
+                              RecentRecordIndex.Staged staged) throws IOException {
+        int successCount = 0;
+        int failedCount = 0;
 
-            log.info("File processed: {}. Success: {}, Failed: {}", file.getName(), successCount, failedCount);
-        } catch (IOException e) {
-            log.error("Error processing file: {}", file.getName(), e);
-            cdrLog.setFailedCount(failedCount);
+        CdrColumnBatch batch = new CdrColumnBatch(batchSize);
+        int[] bounds = new int[CDR_FIELD_COUNT * 2];
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    appendRecord(line, batch, bounds);
+                    successCount++;
+                } catch (Exception e) {
+                    log.error("Error parsing record: {}", line, e);
+                    failedCount++;
+                }
+
+                if (batch.isFull()) {
+                    flush(file, batch, sink, target, staged);
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                flush(file, batch, sink, target, staged);
+            }
+        } finally {
             cdrLog.setSuccessCount(successCount);
-            cdrLog.setUploadEndTime(LocalDateTime.now());
-            cdrLogRepository.save(cdrLog);
+            cdrLog.setFailedCount(failedCount);
+        }
+    }
+
+    private void flush(File file, CdrColumnBatch batch, BatchSink sink, String target,
+                       RecentRecordIndex.Staged staged) throws IOException {
+        BatchPersistedEvent event = new BatchPersistedEvent();
+        event.begin();
+        long start = System.currentTimeMillis();
+        sink.accept(batch);
+        if (!BatchPersistedEvent.SPOOL.equals(target)) {
+            spoolService.recordLatency(file.getName(), System.currentTimeMillis() - start);
+        }
+        commitBatchEvent(event, file, batch.size(), target);
+
+        // Indexed by the caller once the batch is committed, the batch itself is reused
+        staged.add(batch);
+    }
+
+    private void commitBatchEvent(BatchPersistedEvent event, File file, int rows, String target) {
+        if (event.shouldCommit()) {
+            event.fileName = file.getName();
+            event.rows = rows;
+            event.target = target;
+            event.commit();
         }
     }
 
     private void moveFileToProcessedDirectory(File file, String processedDirectory) {
+        FileMovedEvent event = new FileMovedEvent();
+        event.begin();
+
         try {
             Path source = file.toPath();
             Path target = Paths.get(processedDirectory, file.getName());
@@ -107,6 +395,7 @@ public class FileProcessingService {
             } catch (IOException e) {
                 // If moving fails, try to copy and then delete
                 log.warn("Could not move file, attempting to copy instead: {}", file.getName());
+                event.copied = true;
                 Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
 
                 // Try to delete the original file, but don't fail if it doesn't work
@@ -118,8 +407,15 @@ public class FileProcessingService {
 
                 log.info("Copied file to processed directory: {}", target);
             }
+            event.success = true;
         } catch (IOException e) {
             log.error("Error moving file to processed directory: {}", file.getName(), e);
+        } finally {
+            if (event.shouldCommit()) {
+                event.fileName = file.getName();
+                event.target = processedDirectory;
+                event.commit();
+            }
         }
     }
 
@@ -200,6 +496,109 @@ public class FileProcessingService {
         return record;
     }
 
+    /*
+     * Parses a pipe-delimited call detail record straight into the next row of a columnar batch.
+     *
+     * Mirrors parseRecord field for field, but works on offsets into the line instead of split
+     * substrings, so numeric fields and timestamps never become boxed values or temporary objects.
+     *
+     * @param line The pipe-delimited record string to parse
+     * @param batch The batch that receives the row
+     * @param f Scratch array for field offsets, two entries per field
+     * @throws IllegalArgumentException if the record is incomplete or a timestamp is invalid
+     */
+    private void appendRecord(String line, CdrColumnBatch batch, int[] f) {
+        int fields = splitFields(line, f);
+        if (fields <= 20) {
+            throw new IllegalArgumentException("Record has only " + fields + " fields");
+        }
+
+        batch.beginRow();
+
+        // Parse timestamp in format "2023-08-18 10:00:00,024"
+        batch.putTimestamp(RECORD_DATE, line, f[0], f[1], ',');
+
+        // Parse other fields
+        batch.putInt(L_SPC, line, f[2], f[3]);
+        batch.putInt(L_SSN, line, f[4], f[5]);
+        batch.putInt(L_RI, line, f[6], f[7]);
+        batch.putInt(L_GT_I, line, f[8], f[9]);
+        batch.putString(L_GT_DIGITS, line, f[10], f[11]);
+        batch.putInt(R_SPC, line, f[12], f[13]);
+        batch.putInt(R_SSN, line, f[14], f[15]);
+        batch.putInt(R_RI, line, f[16], f[17]);
+        batch.putInt(R_GT_I, line, f[18], f[19]);
+        batch.putString(R_GT_DIGITS, line, f[20], f[21]);
+        batch.putString(SERVICE_CODE, line, f[22], f[23]);
+        batch.putInt(OR_NATURE, line, f[24], f[25]);
+        batch.putInt(OR_PLAN, line, f[26], f[27]);
+        batch.putString(OR_DIGITS, line, f[28], f[29]);
+        batch.putInt(DE_NATURE, line, f[30], f[31]);
+        batch.putInt(DE_PLAN, line, f[32], f[33]);
+        batch.putString(DE_DIGITS, line, f[34], f[35]);
+        batch.putInt(ISDN_NATURE, line, f[36], f[37]);
+        batch.putInt(ISDN_PLAN, line, f[38], f[39]);
+        batch.putString(MSISDN, line, f[40], f[41]);
+
+        // Handle optional VLR fields
+        if (fields > 21) batch.putInt(VLR_NATURE, line, f[42], f[43]);
+        if (fields > 22) batch.putInt(VLR_PLAN, line, f[44], f[45]);
+        if (fields > 23) batch.putString(VLR_DIGITS, line, f[46], f[47]);
+
+        // Handle IMSI field
+        if (fields > 24) batch.putString(IMSI, line, f[48], f[49]);
+
+        // Required fields
+        if (fields > 25) batch.putString(STATUS, line, f[50], f[51]);
+        if (fields > 26) batch.putString(TYPE, line, f[52], f[53]);
+
+        // Parse timestamp in format "2023-08-18 10:00:00.024"
+        if (fields > 27) batch.putTimestamp(TSTAMP, line, f[54], f[55], '.');
+
+        // Parse remaining fields
+        if (fields > 28) batch.putLong(LOCAL_DIALOG_ID, line, f[56], f[57]);
+        if (fields > 29) batch.putLong(REMOTE_DIALOG_ID, line, f[58], f[59]);
+        if (fields > 30) batch.putLong(DIALOG_DURATION, line, f[60], f[61]);
+        if (fields > 31) batch.putString(USSD_STRING, line, f[62], f[63]);
+        if (fields > 32) batch.putString(RECORD_UNIQUE_ID, line, f[64], f[65]);
+
+        batch.commitRow();
+    }
+
+    /*
+     * Records the start and end offsets of the first CDR_FIELD_COUNT fields of the line and returns
+     * how many fields there are. Trailing empty fields are not counted, matching String.split.
+     */
+    private int splitFields(String line, int[] bounds) {
+        int count = 0;
+        int nonEmpty = 0;
+        int start = 0;
+        while (count < CDR_FIELD_COUNT) {
+            int end = line.indexOf('|', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            bounds[count * 2] = start;
+            bounds[count * 2 + 1] = end;
+            count++;
+            if (end > start) {
+                nonEmpty = count;
+            }
+            if (end == line.length()) {
+                return nonEmpty;
+            }
+            start = end + 1;
+        }
+
+        // More fields follow; they only matter if they make the earlier empty fields non-trailing
+        for (int i = start; i < line.length(); i++) {
+            if (line.charAt(i) != '|') {
+                return count;
+            }
+        }
+        return nonEmpty;
+    }
+
     private Integer parseIntOrNull(String value) {
         if (value == null || value.trim().isEmpty()) {
             return null;
@@ -221,4 +620,9 @@ public class FileProcessingService {
             return null;
         }
     }
+
+    @FunctionalInterface
+    private interface BatchSink {
+        void accept(CdrColumnBatch batch) throws IOException;
+    }
 }
@@ -0,0 +1,439 @@
+package com.assessment.fileloader.service;
+
+import com.assessment.fileloader.model.CallDetailRecord;
+import com.assessment.fileloader.model.CdrColumnBatch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Bounded in-memory index of recently ingested records, looked up by MSISDN or IMSI.
+ *
+ * Records are written into a fixed-size ring, each slot stamped with a global sequence number.
+ * A primitive long-keyed hash map points from each MSISDN/IMSI to the sequence number of its newest
+ * record, and every record links to the previous one for the same key, so a lookup walks a short
+ * chain through the ring. Once the ring wraps, overwritten slots no longer carry the expected
+ * sequence number and the chain simply ends there. Records older than the retention window are
+ * not indexed and are filtered out of lookups; the map is swept of stale keys periodically.
+ *
+ * Loaders stage the records of a file while it is being written and publish them once the data is
+ * committed, so a rolled back or retried file never shows up in lookups.
+ */
+@Service
+public class RecentRecordIndex {
+
+    private static final long NONE = -1;
+    private static final long NULL_DURATION = Long.MIN_VALUE;
+    private static final int MAX_KEY_DIGITS = 15;
+    private static final int MAX_CHAIN_STEPS = 10_000;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final long retentionMillis;
+    private final Clock clock;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Ring of recent records, one column per field
+    private final long[] seqs;
+    private final long[] times;
+    private final long[] nextByMsisdn;
+    private final long[] nextByImsi;
+    private final long[] durations;
+    private final String[] msisdns;
+    private final String[] imsis;
+    private final String[] serviceCodes;
+    private final String[] statuses;
+    private final String[] types;
+    private final String[] ussdStrings;
+    private final String[] recordIds;
+    private long nextSeq;
+
+    private final LongLongMap msisdnHeads = new LongLongMap();
+    private final LongLongMap imsiHeads = new LongLongMap();
+
+    @Autowired
+    public RecentRecordIndex(@Value("${recent-index.enabled:true}") boolean enabled,
+                             @Value("${recent-index.capacity:200000}") int capacity,
+                             @Value("${recent-index.retention-minutes:60}") long retentionMinutes) {
+        this(enabled, capacity, retentionMinutes, Clock.systemDefaultZone());
+    }
+
+    RecentRecordIndex(boolean enabled, int capacity, long retentionMinutes, Clock clock) {
+        this.enabled = enabled;
+        this.capacity = enabled ? capacity : 1;
+        this.retentionMillis = retentionMinutes * 60_000L;
+        this.clock = clock;
+        this.seqs = new long[this.capacity];
+        this.times = new long[this.capacity];
+        this.nextByMsisdn = new long[this.capacity];
+        this.nextByImsi = new long[this.capacity];
+        this.durations = new long[this.capacity];
+        this.msisdns = new String[this.capacity];
+        this.imsis = new String[this.capacity];
+        this.serviceCodes = new String[this.capacity];
+        this.statuses = new String[this.capacity];
+        this.types = new String[this.capacity];
+        this.ussdStrings = new String[this.capacity];
+        this.recordIds = new String[this.capacity];
+        Arrays.fill(seqs, NONE);
+    }
+
+    /**
+     * Start collecting records to be indexed together once they are committed
+     * @return an empty staging buffer for publish()
+     */
+    public Staged stage() {
+        return new Staged();
+    }
+
+    /**
+     * Add staged records to the index
+     * @param staged records collected since stage()
+     */
+    public void publish(Staged staged) {
+        if (!enabled || staged.rows.isEmpty()) {
+            return;
+        }
+
+        long cutoff = cutoffMillis();
+        lock.writeLock().lock();
+        try {
+            for (StagedRow row : staged.rows) {
+                if (row.time() >= cutoff) {
+                    add(row.time(), row.msisdn(), row.imsi(), row.serviceCode(), row.status(), row.type(),
+                            row.ussdString(), row.recordId(), row.duration());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        staged.rows.clear();
+    }
+
+    public void index(CdrColumnBatch batch) {
+        Staged staged = stage();
+        staged.add(batch);
+        publish(staged);
+    }
+
+    public void index(List<CallDetailRecord> records) {
+        Staged staged = stage();
+        staged.add(records);
+        publish(staged);
+    }
+
+    /**
+     * Records for an MSISDN within the last few minutes, newest first
+     * @param msisdn the MSISDN digits
+     * @param minutes how far back to look, capped at the retention window
+     * @return the matching records held in memory
+     */
+    public List<RecentRecord> findByMsisdn(String msisdn, long minutes) {
+        return find(msisdnHeads, nextByMsisdn, msisdn, minutes);
+    }
+
+    /**
+     * Records for an IMSI within the last few minutes, newest first
+     * @param imsi the IMSI digits
+     * @param minutes how far back to look, capped at the retention window
+     * @return the matching records held in memory
+     */
+    public List<RecentRecord> findByImsi(String imsi, long minutes) {
+        return find(imsiHeads, nextByImsi, imsi, minutes);
+    }
+
+    /**
+     * Drop keys whose newest record has been overwritten or has aged out of the retention window
+     */
+    @Scheduled(fixedDelayString = "${recent-index.sweep-interval:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        long cutoff = cutoffMillis();
+        lock.writeLock().lock();
+        try {
+            msisdnHeads.retainValues(seq -> isLive(seq) && times[slot(seq)] >= cutoff);
+            imsiHeads.retainValues(seq -> isLive(seq) && times[slot(seq)] >= cutoff);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<RecentRecord> find(LongLongMap heads, long[] next, String value, long minutes) {
+        long key = key(value);
+        if (!enabled || key == NONE) {
+            return List.of();
+        }
+
+        long cutoff = Math.max(cutoffMillis(), nowMillis() - minutes * 60_000L);
+        List<RecentRecord> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            long seq = heads.get(key, NONE);
+            for (int steps = 0; seq != NONE && isLive(seq) && steps < MAX_CHAIN_STEPS; steps++) {
+                int slot = slot(seq);
+                if (times[slot] >= cutoff) {
+                    result.add(new RecentRecord(
+                            LocalDateTime.ofEpochSecond(Math.floorDiv(times[slot], 1000L),
+                                    (int) Math.floorMod(times[slot], 1000L) * 1_000_000, ZoneOffset.UTC),
+                            msisdns[slot], imsis[slot], serviceCodes[slot], statuses[slot], types[slot],
+                            durations[slot] == NULL_DURATION ? null : durations[slot],
+                            ussdStrings[slot], recordIds[slot]));
+                }
+                seq = next[slot];
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        result.sort((a, b) -> b.recordDate().compareTo(a.recordDate()));
+        return result;
+    }
+
+    private void add(long time, String msisdn, String imsi, String serviceCode, String status, String type,
+                     String ussdString, String recordId, long duration) {
+        long seq = nextSeq++;
+        int slot = slot(seq);
+
+        seqs[slot] = seq;
+        times[slot] = time;
+        durations[slot] = duration;
+        msisdns[slot] = msisdn;
+        imsis[slot] = imsi;
+        serviceCodes[slot] = serviceCode;
+        statuses[slot] = status;
+        types[slot] = type;
+        ussdStrings[slot] = ussdString;
+        recordIds[slot] = recordId;
+
+        long msisdnKey = key(msisdn);
+        nextByMsisdn[slot] = msisdnKey == NONE ? NONE : msisdnHeads.get(msisdnKey, NONE);
+        if (msisdnKey != NONE) {
+            msisdnHeads.put(msisdnKey, seq);
+        }
+
+        long imsiKey = key(imsi);
+        nextByImsi[slot] = imsiKey == NONE ? NONE : imsiHeads.get(imsiKey, NONE);
+        if (imsiKey != NONE) {
+            imsiHeads.put(imsiKey, seq);
+        }
+    }
+
+    private boolean isLive(long seq) {
+        return seqs[slot(seq)] == seq;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % capacity);
+    }
+
+    private long cutoffMillis() {
+        return nowMillis() - retentionMillis;
+    }
+
+    // Local wall-clock time encoded the same way as CdrColumnBatch timestamps
+    private long nowMillis() {
+        return toMillis(LocalDateTime.now(clock));
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000L + time.getNano() / 1_000_000;
+    }
+
+    /*
+     * Packs up to MAX_KEY_DIGITS digits and the digit count into a long, so leading zeros stay
+     * significant. Returns NONE for blank or non-numeric values, which are not indexed.
+     */
+    static long key(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        int length = value.length();
+        if (length == 0 || length > MAX_KEY_DIGITS) {
+            return NONE;
+        }
+        long digits = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NONE;
+            }
+            digits = digits * 10 + digit;
+        }
+        return digits | ((long) length << 50);
+    }
+
+    /**
+     * Records of one file waiting to be published. Rows outside the retention window are dropped as
+     * they are added, and at most capacity rows are kept since older ones would be overwritten anyway.
+     */
+    public final class Staged {
+
+        private final ArrayDeque<StagedRow> rows = new ArrayDeque<>();
+
+        private Staged() {
+        }
+
+        public void add(CdrColumnBatch batch) {
+            if (!enabled) {
+                return;
+            }
+
+            long cutoff = cutoffMillis();
+            for (int row = 0; row < batch.size(); row++) {
+                if (batch.isLongNull(CdrColumnBatch.RECORD_DATE, row)) {
+                    continue;
+                }
+                long time = batch.getLong(CdrColumnBatch.RECORD_DATE, row);
+                if (time < cutoff) {
+                    continue;
+                }
+                keep(new StagedRow(time,
+                        batch.getString(CdrColumnBatch.MSISDN, row),
+                        batch.getString(CdrColumnBatch.IMSI, row),
+                        batch.getString(CdrColumnBatch.SERVICE_CODE, row),
+                        batch.getString(CdrColumnBatch.STATUS, row),
+                        batch.getString(CdrColumnBatch.TYPE, row),
+                        batch.getString(CdrColumnBatch.USSD_STRING, row),
+                        batch.getString(CdrColumnBatch.RECORD_UNIQUE_ID, row),
+                        batch.isLongNull(CdrColumnBatch.DIALOG_DURATION, row)
+                                ? NULL_DURATION : batch.getLong(CdrColumnBatch.DIALOG_DURATION, row)));
+            }
+        }
+
+        public void add(List<CallDetailRecord> records) {
+            if (!enabled) {
+                return;
+            }
+
+            long cutoff = cutoffMillis();
+            for (CallDetailRecord record : records) {
+                if (record.getRecordDate() == null) {
+                    continue;
+                }
+                long time = toMillis(record.getRecordDate());
+                if (time < cutoff) {
+                    continue;
+                }
+                keep(new StagedRow(time, record.getMsisdn(), record.getImsi(), record.getServiceCode(),
+                        record.getStatus(), record.getType(), record.getUssdString(), record.getRecordId(),
+                        record.getDialogDuration() == null ? NULL_DURATION : record.getDialogDuration()));
+            }
+        }
+
+        private void keep(StagedRow row) {
+            if (rows.size() == capacity) {
+                rows.poll();
+            }
+            rows.add(row);
+        }
+    }
+
+    private record StagedRow(long time, String msisdn, String imsi, String serviceCode, String status, String type,
+                             String ussdString, String recordId, long duration) {
+    }
+
+    public record RecentRecord(LocalDateTime recordDate, String msisdn, String imsi, String serviceCode,
+                               String status, String type, Long dialogDuration, String ussdString,
+                               String recordId) {
+    }
+
+    /*
+     * Open-addressing hash map from non-negative long keys to long values, with linear probing.
+     */
+    private static final class LongLongMap {
+
+        private static final long EMPTY = -1;
+
+        private long[] keys = new long[1024];
+        private long[] values = new long[1024];
+        private int size;
+
+        LongLongMap() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        long get(long key, long missing) {
+            int mask = keys.length - 1;
+            for (int i = index(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                if (keys[i] == EMPTY) {
+                    return missing;
+                }
+            }
+        }
+
+        void put(long key, long value) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            for (int i = index(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                if (keys[i] == EMPTY) {
+                    keys[i] = key;
+                    values[i] = value;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        void retainValues(LongPredicate keep) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            int capacity = 1024;
+            while (capacity < size * 2) {
+                capacity <<= 1;
+            }
+            reset(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY && keep.test(oldValues[i])) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            reset(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private void reset(int capacity) {
+            keys = new long[capacity];
+            values = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+
+        private static int index(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.assessment.fileloader.service;
+
+import com.assessment.fileloader.model.CdrColumnBatch;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk log of parsed files waiting to be loaded into the database.
+ *
+ * Each spooled file is written as a group: one BATCH entry per CdrColumnBatch followed by a
+ * FILE_END entry carrying the CdrLog values. Every entry is framed as [type][length][payload][crc32]
+ * and the segment is forced to disk when a group is committed, so a crash can only leave an
+ * incomplete group at the tail, which is discarded on replay.
+ *
+ * Groups are replayed strictly in the order they were written. Progress within a segment is kept in
+ * a checkpoint file written after each group is replayed, and fully replayed segments are deleted. A
+ * crash between a replay and its checkpoint hands the same group to the replayer again, so replayers
+ * must recognise a group they already loaded.
+ *
+ * A group the replayer rejects with UnreplayableGroupException is copied to the quarantine directory
+ * so it does not block the groups behind it. A segment that still holds bytes after its last
+ * readable group is moved to the quarantine directory as well rather than deleted.
+ */
+@Slf4j
+public class SpoolSegmentLog {
+
+    private static final byte BATCH = 1;
+    private static final byte FILE_END = 2;
+    private static final int HEADER_BYTES = 5;
+    private static final int CRC_BYTES = 4;
+    private static final int MAX_ENTRY_BYTES = 256 * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String QUARANTINE_DIRECTORY = "quarantine";
+
+    private final Path directory;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel active;
+    private Path activePath;
+    private long groupStart;
+    private long nextSegment;
+
+    public SpoolSegmentLog(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        List<Path> existing = segments();
+        this.nextSegment = existing.isEmpty() ? 1 : segmentNumber(existing.get(existing.size() - 1)) + 1;
+    }
+
+    /**
+     * Start a new group. Blocks other writers until commitGroup or abortGroup is called.
+     */
+    public void beginGroup() throws IOException {
+        writeLock.lock();
+        try {
+            if (active == null) {
+                activePath = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+                active = FileChannel.open(activePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
+            groupStart = active.position();
+        } catch (IOException e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
+
+    public void appendBatch(CdrColumnBatch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        batch.writeTo(new DataOutputStream(bytes));
+        append(BATCH, bytes.toByteArray());
+    }
+
+    /**
+     * Write the FILE_END entry, force the segment to disk and release the writer lock. On failure
+     * the partly written group is dropped.
+     */
+    public void commitGroup(SpooledFile file) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(file.fileName());
+            out.writeUTF(file.uploadStartTime().toString());
+            out.writeUTF(file.uploadEndTime().toString());
+            out.writeInt(file.successCount());
+            out.writeInt(file.failedCount());
+            out.writeLong(file.contentHash());
+            out.writeLong(file.fileSize());
+            append(FILE_END, bytes.toByteArray());
+            active.force(false);
+        } catch (IOException e) {
+            active.truncate(groupStart);
+            active.position(groupStart);
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drop everything written since beginGroup and release the writer lock.
+     */
+    public void abortGroup() {
+        try {
+            active.truncate(groupStart);
+            active.position(groupStart);
+        } catch (IOException e) {
+            log.error("Could not truncate spool segment: {}", activePath, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean isEmpty() throws IOException {
+        for (Path segment : segments()) {
+            if (Files.size(segment) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replay every committed group in order, stopping at the first replay failure.
+     * @param replayer loads one spooled file; UnreplayableGroupException quarantines the group, any
+     *                 other exception leaves it in the spool
+     * @return the number of groups replayed
+     */
+    public int drain(GroupReplayer replayer) throws IOException {
+        List<Path> sealed = sealActiveSegment();
+        int replayed = 0;
+
+        for (Path segment : sealed) {
+            long offset = checkpointOffset(segment);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                Group group;
+                while ((group = scanGroup(channel, offset)) != null) {
+                    try {
+                        replayer.replay(group.file(), new BatchIterator(channel, offset, group.batchesEnd()));
+                        replayed++;
+                    } catch (UnreplayableGroupException e) {
+                        Path quarantined = quarantineGroup(channel, segment, offset, group.end());
+                        log.error("Could not replay spooled file: {}, moved it to {}", group.file().fileName(), quarantined, e);
+                    }
+                    offset = group.end();
+                    writeCheckpoint(segment, offset);
+                }
+                if (offset < channel.size()) {
+                    log.warn("Found {} unreadable bytes after offset {} in {}, moving the segment to quarantine",
+                            channel.size() - offset, offset, segment);
+                }
+            }
+            if (offset < Files.size(segment)) {
+                Files.move(segment, quarantineDirectory().resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(segment);
+            }
+            Files.deleteIfExists(directory.resolve(CHECKPOINT_FILE));
+        }
+
+        return replayed;
+    }
+
+    /*
+     * Closes the active segment so new groups go to a fresh one, and returns all closed segments
+     * in write order.
+     */
+    private List<Path> sealActiveSegment() throws IOException {
+        writeLock.lock();
+        try {
+            if (active != null && active.size() > 0) {
+                active.close();
+                active = null;
+                activePath = null;
+            }
+            Path current = activePath;
+            return segments().stream().filter(segment -> !segment.equals(current)).toList();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /*
+     * Copies one group into its own segment file in the quarantine directory, in the same format, so
+     * it can be inspected or moved back into the spool once the cause is fixed.
+     */
+    private Path quarantineGroup(FileChannel channel, Path segment, long start, long end) throws IOException {
+        String name = segment.getFileName().toString();
+        Path target = quarantineDirectory().resolve(name.substring(0, name.length() - SEGMENT_SUFFIX.length())
+                + "-" + start + SEGMENT_SUFFIX);
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            long position = start;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, out);
+            }
+            out.force(false);
+        }
+        return target;
+    }
+
+    private Path quarantineDirectory() throws IOException {
+        return Files.createDirectories(directory.resolve(QUARANTINE_DIRECTORY));
+    }
+
+    private void append(byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length + CRC_BYTES);
+        buffer.put(type).putInt(payload.length).put(payload).putInt((int) crc.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+    }
+
+    /*
+     * Reads the entry at the given position, or returns null if it is truncated or corrupt.
+     */
+    private Entry readEntry(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (!readFully(channel, header, position)) {
+            return null;
+        }
+        header.flip();
+        byte type = header.get();
+        int length = header.getInt();
+        if ((type != BATCH && type != FILE_END) || length < 0 || length > MAX_ENTRY_BYTES) {
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(length + CRC_BYTES);
+        if (!readFully(channel, body, position + HEADER_BYTES)) {
+            return null;
+        }
+        body.flip();
+        byte[] payload = new byte[length];
+        body.get(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        if ((int) crc.getValue() != body.getInt()) {
+            return null;
+        }
+        return new Entry(type, payload, position + HEADER_BYTES + length + CRC_BYTES);
+    }
+
+    /*
+     * Walks a group starting at the given offset and returns its extent, or null if there is no
+     * complete group there.
+     */
+    private Group scanGroup(FileChannel channel, long offset) throws IOException {
+        long position = offset;
+        Entry entry;
+        while ((entry = readEntry(channel, position)) != null) {
+            if (entry.type() == FILE_END) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.payload()));
+                SpooledFile file = new SpooledFile(in.readUTF(), LocalDateTime.parse(in.readUTF()),
+                        LocalDateTime.parse(in.readUTF()), in.readInt(), in.readInt(), in.readLong(), in.readLong());
+                return new Group(file, position, entry.next());
+            }
+            position = entry.next();
+        }
+        return null;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long checkpointOffset(Path segment) throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        String[] parts = Files.readString(checkpoint, StandardCharsets.UTF_8).trim().split(" ");
+        return parts.length == 2 && parts[0].equals(segment.getFileName().toString()) ? Long.parseLong(parts[1]) : 0;
+    }
+
+    private void writeCheckpoint(Path segment, long offset) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temp, segment.getFileName() + " " + offset, StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * The CdrLog values of a spooled file
+     */
+    public record SpooledFile(String fileName, LocalDateTime uploadStartTime, LocalDateTime uploadEndTime,
+                              int successCount, int failedCount, long contentHash, long fileSize) {
+    }
+
+    @FunctionalInterface
+    public interface GroupReplayer {
+        void replay(SpooledFile file, Iterator<CdrColumnBatch> batches);
+    }
+
+    /**
+     * Thrown by a GroupReplayer for a group that will never load, e.g. because its rows violate a
+     * database constraint
+     */
+    public static class UnreplayableGroupException extends RuntimeException {
+        public UnreplayableGroupException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private record Entry(byte type, byte[] payload, long next) {
+    }
+
+    private record Group(SpooledFile file, long batchesEnd, long end) {
+    }
+
+    /*
+     * Reads the BATCH entries of an already scanned group one at a time.
+     */
+    private class BatchIterator implements Iterator<CdrColumnBatch> {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        BatchIterator(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        public CdrColumnBatch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Entry entry = readEntry(channel, position);
+                position = entry.next();
+                return CdrColumnBatch.readFrom(new DataInputStream(new ByteArrayInputStream(entry.payload())));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
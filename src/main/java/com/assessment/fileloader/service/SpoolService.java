@@ -0,0 +1,194 @@
+package com.assessment.fileloader.service;
+
+import com.assessment.fileloader.model.CdrColumnBatch;
+import com.assessment.fileloader.model.CdrLog;
+import com.assessment.fileloader.repository.CdrColumnBatchWriter;
+import com.assessment.fileloader.repository.CdrLogRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+/**
+ * Local write-ahead spool used while the database is unavailable or slower than the configured
+ * latency budget. Parsed files are appended to a SpoolSegmentLog instead of the database, and a
+ * background drainer replays them in order, one transaction per file, once the database recovers.
+ *
+ * Only connection and other transient failures count as the database being unavailable. A spooled
+ * file that fails to replay for any other reason is quarantined so it does not hold up the rest.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SpoolService {
+
+    private final CdrColumnBatchWriter cdrColumnBatchWriter;
+    private final CdrLogRepository cdrLogRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${file.spool.enabled:false}")
+    private boolean enabled;
+
+    @Value("${file.spool.directory:spool}")
+    private String directory;
+
+    @Value("${file.spool.latency-budget-ms:0}")
+    private long latencyBudgetMillis;
+
+    private SpoolSegmentLog segmentLog;
+
+    // Set while new files should go to the spool rather than the database
+    private volatile boolean degraded;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        segmentLog = new SpoolSegmentLog(Paths.get(directory));
+        if (!segmentLog.isEmpty()) {
+            log.info("Found spooled files from a previous run in: {}", directory);
+            degraded = true;
+        }
+    }
+
+    /**
+     * Check whether a database failure is worth spooling for
+     * @return true for connection and other transient failures that a later retry may not hit
+     */
+    public static boolean isUnavailable(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Check whether new files should be spooled instead of loaded into the database
+     * @return true while the database is unavailable, slow, or older spooled files are still pending
+     */
+    public boolean isActive() {
+        return enabled && degraded;
+    }
+
+    public void markUnavailable(String fileName, RuntimeException cause) {
+        log.warn("Database unavailable while loading {}, spooling until it recovers: {}", fileName, cause.getMessage());
+        degraded = true;
+    }
+
+    /**
+     * Report how long one batch write to the database took
+     * @param fileName the file the batch came from
+     * @param elapsedMillis time spent in the insert, not counting reading or parsing the file
+     */
+    public void recordLatency(String fileName, long elapsedMillis) {
+        if (enabled && latencyBudgetMillis > 0 && elapsedMillis > latencyBudgetMillis) {
+            log.warn("Writing a batch of {} took {} ms, over the {} ms budget, spooling until the database catches up",
+                    fileName, elapsedMillis, latencyBudgetMillis);
+            degraded = true;
+        }
+    }
+
+    public void beginFile() throws IOException {
+        segmentLog.beginGroup();
+    }
+
+    public void appendBatch(CdrColumnBatch batch) throws IOException {
+        segmentLog.appendBatch(batch);
+    }
+
+    public void commitFile(CdrLog cdrLog) throws IOException {
+        segmentLog.commitGroup(new SpoolSegmentLog.SpooledFile(cdrLog.getFileName(), cdrLog.getUploadStartTime(),
+                cdrLog.getUploadEndTime(), cdrLog.getSuccessCount(), cdrLog.getFailedCount(),
+                cdrLog.getContentHash(), cdrLog.getFileSize()));
+    }
+
+    public void abortFile() {
+        segmentLog.abortGroup();
+    }
+
+    @Scheduled(fixedDelayString = "${file.spool.drain-interval:5000}")
+    public void drain() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            if (segmentLog.isEmpty()) {
+                degraded = false;
+                return;
+            }
+
+            int replayed = segmentLog.drain(this::replay);
+            log.info("Replayed {} spooled files into the database", replayed);
+
+            if (segmentLog.isEmpty()) {
+                degraded = false;
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Database still unavailable, spooled files will be retried: {}", e.getMessage());
+        } catch (IOException e) {
+            log.error("Error reading spool directory: {}", directory, e);
+        }
+    }
+
+    /*
+     * Loads one spooled file and its CdrLog entry in a single transaction. A file whose entry is
+     * already in the database was loaded before the drain checkpoint could be written and is skipped.
+     */
+    private void replay(SpoolSegmentLog.SpooledFile file, Iterator<CdrColumnBatch> batches) {
+        long start = System.currentTimeMillis();
+
+        try {
+            Boolean loaded = new TransactionTemplate(transactionManager).execute(status -> {
+                if (cdrLogRepository.findFirstByContentHashAndFileSizeOrderByIdAsc(file.contentHash(), file.fileSize()).isPresent()) {
+                    return false;
+                }
+
+                while (batches.hasNext()) {
+                    cdrColumnBatchWriter.write(batches.next());
+                }
+
+                CdrLog cdrLog = new CdrLog();
+                cdrLog.setFileName(file.fileName());
+                cdrLog.setUploadStartTime(file.uploadStartTime());
+                cdrLog.setUploadEndTime(file.uploadEndTime());
+                cdrLog.setSuccessCount(file.successCount());
+                cdrLog.setFailedCount(file.failedCount());
+                cdrLog.setContentHash(file.contentHash());
+                cdrLog.setFileSize(file.fileSize());
+                cdrLogRepository.save(cdrLog);
+                return true;
+            });
+
+            if (Boolean.TRUE.equals(loaded)) {
+                log.info("Replayed spooled file: {} in {} ms", file.fileName(), System.currentTimeMillis() - start);
+            } else {
+                log.info("Skipping spooled file: {}. It was already loaded", file.fileName());
+            }
+        } catch (DataAccessException | TransactionException e) {
+            if (isUnavailable(e)) {
+                throw e;
+            }
+            throw new SpoolSegmentLog.UnreplayableGroupException("Could not load spooled file: " + file.fileName(), e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.assessment.fileloader.service;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hands out queued work from several sources using stride scheduling, so that each source with a
+ * backlog gets worker slots in proportion to its weight, and no source runs more than its own
+ * concurrency limit at once. A source with a huge backlog therefore cannot starve the others.
+ *
+ * Every dispatch advances the source's pass by STRIDE / weight and the next item always comes from
+ * the eligible source with the lowest pass. A source that was idle rejoins at the current minimum
+ * pass rather than its old one, so it cannot bank credit while it had nothing to do.
+ *
+ * @param <T> the type of queued work item
+ */
+public class WeightedFairScheduler<T> {
+
+    private static final long STRIDE = 1L << 20;
+
+    private final Map<String, SourceQueue<T>> sources = new LinkedHashMap<>();
+    // Items queued or in flight, so the same item is never queued twice
+    private final Set<T> pending = new HashSet<>();
+    private final int maxInFlight;
+    private int inFlight;
+
+    /**
+     * @param maxInFlight the maximum number of items in flight across all sources
+     */
+    public WeightedFairScheduler(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    public synchronized void register(String source, int weight, int maxConcurrency) {
+        if (weight <= 0 || maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Weight and concurrency must be positive for source: " + source);
+        }
+        sources.put(source, new SourceQueue<>(source, weight, maxConcurrency));
+    }
+
+    /**
+     * Queue an item for a source. Items are deduplicated across all sources, not per source, so an
+     * item that is queued or in flight for one source is not queued again for another.
+     * @return false if the item is already queued or in flight
+     */
+    public synchronized boolean submit(String source, T item) {
+        SourceQueue<T> queue = sources.get(source);
+        if (queue == null) {
+            throw new IllegalArgumentException("Unknown source: " + source);
+        }
+        if (!pending.add(item)) {
+            return false;
+        }
+        if (queue.queue.isEmpty() && queue.inFlight == 0) {
+            queue.pass = Math.max(queue.pass, minimumActivePass());
+        }
+        queue.queue.add(item);
+        notifyAll();
+        return true;
+    }
+
+    public synchronized boolean isPending(T item) {
+        return pending.contains(item);
+    }
+
+    /**
+     * Take the next item to run, waiting for a free slot if necessary.
+     * @return the next task, or null once every queue is empty and nothing is in flight
+     */
+    public synchronized Task<T> take() throws InterruptedException {
+        while (true) {
+            Task<T> task = poll();
+            if (task != null) {
+                return task;
+            }
+            if (inFlight == 0) {
+                return null;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Take the next item to run without waiting.
+     * @return the next task, or null if nothing is eligible right now
+     */
+    public synchronized Task<T> poll() {
+        if (inFlight >= maxInFlight) {
+            return null;
+        }
+
+        SourceQueue<T> next = null;
+        for (SourceQueue<T> queue : sources.values()) {
+            if (!queue.queue.isEmpty() && queue.inFlight < queue.maxConcurrency
+                    && (next == null || queue.pass < next.pass)) {
+                next = queue;
+            }
+        }
+        if (next == null) {
+            return null;
+        }
+
+        next.pass += STRIDE / next.weight;
+        next.inFlight++;
+        inFlight++;
+        return new Task<>(next.name, next.queue.poll());
+    }
+
+    /**
+     * Release the slot held by a task returned from take() or poll()
+     */
+    public synchronized void complete(Task<T> task) {
+        SourceQueue<T> queue = sources.get(task.source());
+        queue.inFlight--;
+        queue.completed++;
+        inFlight--;
+        pending.remove(task.item());
+        notifyAll();
+    }
+
+    public synchronized List<SourceBacklog> backlog() {
+        return sources.values().stream()
+                .map(queue -> new SourceBacklog(queue.name, queue.queue.size(), queue.inFlight, queue.completed))
+                .toList();
+    }
+
+    private long minimumActivePass() {
+        long min = Long.MAX_VALUE;
+        for (SourceQueue<T> queue : sources.values()) {
+            if (!queue.queue.isEmpty() || queue.inFlight > 0) {
+                min = Math.min(min, queue.pass);
+            }
+        }
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public record Task<T>(String source, T item) {
+    }
+
+    public record SourceBacklog(String source, int queued, int inFlight, long completed) {
+    }
+
+    private static class SourceQueue<T> {
+        private final String name;
+        private final int weight;
+        private final int maxConcurrency;
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private long pass;
+        private int inFlight;
+        private long completed;
+
+        SourceQueue(String name, int weight, int maxConcurrency) {
+            this.name = name;
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+        }
+    }
+}
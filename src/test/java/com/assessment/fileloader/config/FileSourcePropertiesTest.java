@@ -0,0 +1,71 @@
+package com.assessment.fileloader.config;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSourcePropertiesTest {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    @BeforeEach
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void validate_shouldAcceptCompleteSources() {
+        FileSourceProperties properties = new FileSourceProperties();
+        properties.getSources().add(source("switch-a", "input-a", "processed-a"));
+        properties.getSources().add(source("switch-b", "input-b", "processed-b"));
+
+        assertTrue(validator.validate(properties).isEmpty());
+    }
+
+    @Test
+    void validate_shouldRejectMissingDirectories() {
+        FileSourceProperties properties = new FileSourceProperties();
+        properties.getSources().add(source("switch-a", null, " "));
+
+        Set<ConstraintViolation<FileSourceProperties>> violations = validator.validate(properties);
+
+        assertEquals(Set.of("sources[0].directory", "sources[0].processedDirectory"),
+                violations.stream().map(violation -> violation.getPropertyPath().toString()).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void validate_shouldRejectDuplicateNames() {
+        FileSourceProperties properties = new FileSourceProperties();
+        properties.getSources().add(source("switch-a", "input-a", "processed-a"));
+        properties.getSources().add(source("switch-a", "input-b", "processed-b"));
+
+        Set<ConstraintViolation<FileSourceProperties>> violations = validator.validate(properties);
+
+        assertEquals(1, violations.size());
+        assertEquals("sourceNamesUnique", violations.iterator().next().getPropertyPath().toString());
+    }
+
+    private FileSourceProperties.Source source(String name, String directory, String processedDirectory) {
+        FileSourceProperties.Source source = new FileSourceProperties.Source();
+        source.setName(name);
+        source.setDirectory(directory);
+        source.setProcessedDirectory(processedDirectory);
+        return source;
+    }
+}
@@ -0,0 +1,125 @@
+package com.assessment.fileloader.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CdrColumnBatchTest {
+
+    @Test
+    void putValues_shouldStoreParsedValuesAndNulls() {
+        // Given
+        CdrColumnBatch batch = new CdrColumnBatch(4);
+        String line = "2023-08-18 10:00:00,024| 42 ||abc|99999999999";
+
+        // When
+        batch.beginRow();
+        batch.putTimestamp(CdrColumnBatch.RECORD_DATE, line, 0, 23, ',');
+        batch.putInt(CdrColumnBatch.L_SPC, line, 24, 28);
+        batch.putInt(CdrColumnBatch.L_SSN, line, 29, 29);
+        batch.putInt(CdrColumnBatch.L_RI, line, 30, 33);
+        batch.putInt(CdrColumnBatch.L_GT_I, line, 34, 45);
+        batch.putLong(CdrColumnBatch.LOCAL_DIALOG_ID, line, 34, 45);
+        batch.commitRow();
+
+        // Then
+        assertEquals(1, batch.size());
+        assertEquals(LocalDateTime.of(2023, 8, 18, 10, 0, 0, 24_000_000),
+                batch.getTimestamp(CdrColumnBatch.RECORD_DATE, 0));
+        assertEquals(42, batch.getInt(CdrColumnBatch.L_SPC, 0));
+        assertFalse(batch.isIntNull(CdrColumnBatch.L_SPC, 0));
+        assertTrue(batch.isIntNull(CdrColumnBatch.L_SSN, 0));
+        assertTrue(batch.isIntNull(CdrColumnBatch.L_RI, 0));
+        assertTrue(batch.isIntNull(CdrColumnBatch.L_GT_I, 0));
+        assertEquals(99999999999L, batch.getLong(CdrColumnBatch.LOCAL_DIALOG_ID, 0));
+        assertTrue(batch.isLongNull(CdrColumnBatch.TSTAMP, 0));
+        assertNull(batch.getTimestamp(CdrColumnBatch.TSTAMP, 0));
+    }
+
+    @Test
+    void putString_shouldReusePooledInstances() {
+        // Given
+        CdrColumnBatch batch = new CdrColumnBatch(4);
+
+        // When
+        batch.beginRow();
+        batch.putString(CdrColumnBatch.STATUS, "x|FAILED|y", 2, 8);
+        batch.putString(CdrColumnBatch.MSISDN, "x|573228553366|y", 2, 14);
+        batch.commitRow();
+        batch.beginRow();
+        batch.putString(CdrColumnBatch.STATUS, "FAILED", 0, 6);
+        batch.putString(CdrColumnBatch.MSISDN, "x|573228553366|y", 2, 14);
+        batch.commitRow();
+
+        // Then
+        assertEquals("FAILED", batch.getString(CdrColumnBatch.STATUS, 1));
+        assertSame(batch.getString(CdrColumnBatch.STATUS, 0), batch.getString(CdrColumnBatch.STATUS, 1));
+        assertEquals("573228553366", batch.getString(CdrColumnBatch.MSISDN, 1));
+        assertNotSame(batch.getString(CdrColumnBatch.MSISDN, 0), batch.getString(CdrColumnBatch.MSISDN, 1));
+    }
+
+    @Test
+    void putTimestamp_shouldRejectInvalidValues() {
+        CdrColumnBatch batch = new CdrColumnBatch(1);
+        batch.beginRow();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> batch.putTimestamp(CdrColumnBatch.TSTAMP, "2023-02-32 10:00:00.024", 0, 23, '.'));
+        assertThrows(IllegalArgumentException.class,
+                () -> batch.putTimestamp(CdrColumnBatch.TSTAMP, "2023-08-18 24:00:00.001", 0, 23, '.'));
+        assertThrows(IllegalArgumentException.class,
+                () -> batch.putTimestamp(CdrColumnBatch.TSTAMP, "2023-08-18 10:00:00,024", 0, 23, '.'));
+    }
+
+    @Test
+    void putTimestamp_shouldResolveLikeDateTimeFormatter() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+        CdrColumnBatch batch = new CdrColumnBatch(1);
+
+        for (String value : List.of("2023-02-30 10:00:00.024", "2024-02-31 10:00:00.024",
+                "2023-04-31 23:59:59.999", "2023-12-31 24:00:00.000")) {
+            batch.beginRow();
+            batch.putTimestamp(CdrColumnBatch.TSTAMP, value, 0, 23, '.');
+            batch.commitRow();
+
+            assertEquals(LocalDateTime.parse(value, formatter), batch.getTimestamp(CdrColumnBatch.TSTAMP, 0), value);
+            batch.clear();
+        }
+    }
+
+    @Test
+    void beginRow_shouldResetUncommittedRow() {
+        // Given
+        CdrColumnBatch batch = new CdrColumnBatch(2);
+        batch.beginRow();
+        batch.setInt(CdrColumnBatch.L_SPC, 7);
+
+        // When - the first row is abandoned without commitRow
+        batch.beginRow();
+        batch.commitRow();
+
+        // Then
+        assertEquals(1, batch.size());
+        assertTrue(batch.isIntNull(CdrColumnBatch.L_SPC, 0));
+    }
+
+    @Test
+    void clear_shouldAllowBatchToBeRefilled() {
+        CdrColumnBatch batch = new CdrColumnBatch(1);
+        batch.beginRow();
+        batch.commitRow();
+        assertTrue(batch.isFull());
+        assertThrows(IllegalStateException.class, batch::beginRow);
+
+        batch.clear();
+
+        assertTrue(batch.isEmpty());
+        batch.beginRow();
+        batch.commitRow();
+        assertEquals(1, batch.size());
+    }
+}
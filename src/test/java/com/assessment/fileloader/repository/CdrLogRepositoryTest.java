@@ -48,4 +48,22 @@ class CdrLogRepositoryTest {
         // Then
         assertFalse(exists);
     }
-}
\ No newline at end of file
+
+    @Test
+    void findFirstByContentHashAndFileSize_shouldFindRenamedDuplicate() {
+        // Given
+        CdrLog cdrLog = new CdrLog();
+        cdrLog.setFileName("original.log");
+        cdrLog.setUploadStartTime(LocalDateTime.now());
+        cdrLog.setContentHash(0x1234ABCDL);
+        cdrLog.setFileSize(2048L);
+
+        entityManager.persist(cdrLog);
+        entityManager.flush();
+
+        // When / Then
+        assertEquals("original.log", cdrLogRepository.findFirstByContentHashAndFileSizeOrderByIdAsc(0x1234ABCDL, 2048L)
+                .map(CdrLog::getFileName).orElse(null));
+        assertTrue(cdrLogRepository.findFirstByContentHashAndFileSizeOrderByIdAsc(0x1234ABCDL, 4096L).isEmpty());
+    }
+}
@@ -0,0 +1,190 @@
+package com.assessment.fileloader.service;
+
+import com.assessment.fileloader.model.CdrLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BackfillServiceTest {
+
+    @Mock
+    private FileProcessingService fileProcessingService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private BackfillService backfillService;
+
+    private Path archive;
+    private Path indexFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        archive = Files.createTempDirectory("archive-");
+        Files.createDirectories(archive.resolve("2023/08/18"));
+        Files.createDirectories(archive.resolve("2023/08/19"));
+
+        ReflectionTestUtils.setField(backfillService, "filePattern", "*.log");
+        ReflectionTestUtils.setField(backfillService, "threads", 2);
+
+        indexFile = Files.createTempDirectory("backfill-").resolve("dropped-indexes.sql");
+        ReflectionTestUtils.setField(backfillService, "indexFile", indexFile.toString());
+    }
+
+    @Test
+    void backfill_shouldLoadEveryMatchingFileInTheTree() throws Exception {
+        // Given
+        createTestFile("2023/08/18/a.log");
+        createTestFile("2023/08/18/b.log");
+        createTestFile("2023/08/19/c.log");
+        createTestFile("2023/08/19/readme.txt");
+
+        List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+        when(fileProcessingService.loadForBackfill(any(File.class), any())).thenAnswer(invocation -> {
+            File file = invocation.getArgument(0);
+            loaded.add(file.getName());
+            return Optional.of(loadedLog(file));
+        });
+
+        // When
+        BackfillService.BackfillSummary summary = backfillService.backfill(archive);
+
+        // Then
+        assertEquals(3, summary.filesFound());
+        assertEquals(3, summary.filesLoaded());
+        assertEquals(0, summary.filesFailed());
+        assertEquals(30, summary.recordsLoaded());
+        assertEquals(List.of("a.log", "b.log", "c.log"), loaded.stream().sorted().toList());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void backfill_shouldSkipProcessedFilesAndCountFailures() throws Exception {
+        // Given
+        File done = createTestFile("2023/08/18/done.log");
+        File broken = createTestFile("2023/08/18/broken.log");
+        File fresh = createTestFile("2023/08/19/fresh.log");
+
+        when(fileProcessingService.hasBeenProcessed(anyString())).thenReturn(false);
+        when(fileProcessingService.hasBeenProcessed("done.log")).thenReturn(true);
+        when(fileProcessingService.isNameCollision(done)).thenReturn(false);
+        when(fileProcessingService.loadForBackfill(eq(broken), any())).thenThrow(new IOException("Unreadable"));
+        when(fileProcessingService.loadForBackfill(eq(fresh), any())).thenReturn(Optional.of(loadedLog(fresh)));
+
+        // When
+        BackfillService.BackfillSummary summary = backfillService.backfill(archive);
+
+        // Then
+        assertEquals(3, summary.filesFound());
+        assertEquals(1, summary.filesLoaded());
+        assertEquals(1, summary.filesSkipped());
+        assertEquals(1, summary.filesFailed());
+        verify(fileProcessingService, never()).loadForBackfill(eq(done), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void backfill_shouldRebuildDroppedIndexesAtTheEnd() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(backfillService, "dropIndexes", true);
+        createTestFile("2023/08/18/a.log");
+
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("call_detail_records"))).thenAnswer(invocation -> {
+            RowMapper<Object> mapper = invocation.getArgument(1);
+            return List.of(mapper.mapRow(indexRow("idx_cdr_msisdn",
+                    "CREATE INDEX idx_cdr_msisdn ON public.call_detail_records USING btree (msisdn)"), 0));
+        });
+        List<String> savedWhileLoading = new ArrayList<>();
+        when(fileProcessingService.loadForBackfill(any(File.class), any())).thenAnswer(invocation -> {
+            savedWhileLoading.addAll(Files.readAllLines(indexFile));
+            return Optional.of(loadedLog(invocation.getArgument(0)));
+        });
+
+        // When
+        backfillService.backfill(archive);
+
+        // Then
+        InOrder inOrder = inOrder(jdbcTemplate, fileProcessingService);
+        inOrder.verify(jdbcTemplate).execute("DROP INDEX \"public\".\"idx_cdr_msisdn\"");
+        inOrder.verify(fileProcessingService).loadForBackfill(any(File.class), any());
+        inOrder.verify(jdbcTemplate).execute(
+                "CREATE INDEX IF NOT EXISTS idx_cdr_msisdn ON public.call_detail_records USING btree (msisdn)");
+
+        // The definition was on disk while the index was missing, and is removed once it is rebuilt
+        assertTrue(savedWhileLoading.contains(
+                "CREATE INDEX IF NOT EXISTS idx_cdr_msisdn ON public.call_detail_records USING btree (msisdn);"));
+        assertFalse(Files.exists(indexFile));
+    }
+
+    @Test
+    void backfill_shouldRebuildIndexesLeftDroppedByAnEarlierRun() throws Exception {
+        // Given
+        Files.write(indexFile, List.of("-- Indexes dropped by a backfill run",
+                "CREATE INDEX IF NOT EXISTS idx_cdr_imsi ON public.call_detail_records USING btree (imsi);"));
+        createTestFile("2023/08/18/a.log");
+        when(fileProcessingService.loadForBackfill(any(File.class), any()))
+                .thenAnswer(invocation -> Optional.of(loadedLog(invocation.getArgument(0))));
+
+        // When
+        backfillService.backfill(archive);
+
+        // Then - rebuilt before loading, since this run does not drop indexes
+        InOrder inOrder = inOrder(jdbcTemplate, fileProcessingService);
+        inOrder.verify(jdbcTemplate).execute(
+                "CREATE INDEX IF NOT EXISTS idx_cdr_imsi ON public.call_detail_records USING btree (imsi)");
+        inOrder.verify(fileProcessingService).loadForBackfill(any(File.class), any());
+        verifyNoMoreInteractions(jdbcTemplate);
+        assertFalse(Files.exists(indexFile));
+    }
+
+    private File createTestFile(String relativePath) throws IOException {
+        Path filePath = archive.resolve(relativePath);
+        Files.writeString(filePath, "Test content");
+        return filePath.toFile();
+    }
+
+    private static CdrLog loadedLog(File file) {
+        CdrLog cdrLog = new CdrLog();
+        cdrLog.setFileName(file.getName());
+        cdrLog.setSuccessCount(10);
+        cdrLog.setFailedCount(0);
+        cdrLog.setFileSize(file.length());
+        return cdrLog;
+    }
+
+    private static ResultSet indexRow(String name, String definition) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn("public");
+        when(rs.getString(2)).thenReturn(name);
+        when(rs.getString(3)).thenReturn(definition);
+        return rs;
+    }
+}
@@ -0,0 +1,62 @@
+package com.assessment.fileloader.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentFingerprintTest {
+
+    @Test
+    void xxHash64_shouldMatchReferenceValues() {
+        assertEquals(0xEF46DB3751D8E999L, hash(""));
+        assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    void xxHash64_shouldNotDependOnChunking() {
+        byte[] data = "2023-08-18 10:00:00,024|15845|15|0|4|573103154359||6|0|4|573103804442|*611#".getBytes(StandardCharsets.UTF_8);
+        ContentFingerprint.XxHash64 chunked = new ContentFingerprint.XxHash64();
+        for (int i = 0; i < data.length; i += 7) {
+            chunked.update(ByteBuffer.wrap(data, i, Math.min(7, data.length - i)));
+        }
+
+        assertEquals(hash(new String(data, StandardCharsets.UTF_8)), chunked.digest());
+    }
+
+    @Test
+    void of_shouldFingerprintSameContentEquallyAndSampleLargeFiles() throws IOException {
+        // Given
+        byte[] data = new byte[4 * 1024 * 1024];
+        new Random(42).nextBytes(data);
+        Path first = Files.write(Files.createTempFile("first-", ".log"), data);
+        Path renamed = Files.write(Files.createTempFile("renamed-", ".log"), data);
+
+        // When
+        ContentFingerprint.Fingerprint full = ContentFingerprint.of(first, 0);
+        ContentFingerprint.Fingerprint sampled = ContentFingerprint.of(first, 1024);
+
+        // Then
+        ContentFingerprint.XxHash64 inMemory = new ContentFingerprint.XxHash64();
+        inMemory.update(ByteBuffer.wrap(data));
+        assertEquals(inMemory.digest(), full.hash());
+        assertEquals(full, ContentFingerprint.of(renamed, 0));
+        assertEquals(sampled, ContentFingerprint.of(renamed, 1024));
+        assertEquals(data.length, full.size());
+        assertNotEquals(full.hash(), sampled.hash());
+    }
+
+    private static long hash(String value) {
+        ContentFingerprint.XxHash64 hash = new ContentFingerprint.XxHash64();
+        hash.update(ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8)));
+        return hash.digest();
+    }
+}
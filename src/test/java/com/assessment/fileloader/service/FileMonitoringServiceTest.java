@@ -1,10 +1,13 @@
 package com.assessment.fileloader.service;
 
+import com.assessment.fileloader.config.FileSourceProperties;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
@@ -12,7 +15,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -23,6 +30,9 @@ class FileMonitoringServiceTest {
     @Mock
     private FileProcessingService fileProcessingService;
 
+    @Spy
+    private FileSourceProperties fileSourceProperties = new FileSourceProperties();
+
     @InjectMocks
     private FileMonitoringService fileMonitoringService;
 
@@ -40,6 +50,11 @@ class FileMonitoringServiceTest {
         ReflectionTestUtils.setField(fileMonitoringService, "processedDirectory", processedDirectory.toString());
     }
 
+    @AfterEach
+    void tearDown() {
+        fileMonitoringService.shutdown();
+    }
+
     @Test
     void monitorDirectory_shouldProcessNewFiles() throws IOException {
         // Given
@@ -53,8 +68,8 @@ class FileMonitoringServiceTest {
         fileMonitoringService.monitorDirectory();
 
         // Then
-        verify(fileProcessingService).processFile(eq(file1), anyString());
-        verify(fileProcessingService).processFile(eq(file2), anyString());
+        verify(fileProcessingService, timeout(1000)).processFile(eq(file1), anyString());
+        verify(fileProcessingService, timeout(1000)).processFile(eq(file2), anyString());
     }
 
     @Test
@@ -71,7 +86,7 @@ class FileMonitoringServiceTest {
 
         // Then
         verify(fileProcessingService, never()).processFile(eq(file1), anyString());
-        verify(fileProcessingService).processFile(eq(file2), anyString());
+        verify(fileProcessingService, timeout(1000)).processFile(eq(file2), anyString());
     }
 
     @Test
@@ -98,6 +113,75 @@ class FileMonitoringServiceTest {
         verify(fileProcessingService, never()).processFile(any(), anyString());
     }
 
+    @Test
+    void monitorDirectory_shouldProcessEachConfiguredSource() throws Exception {
+        // Given
+        Path switchA = Files.createTempDirectory("switch-a-");
+        Path switchB = Files.createTempDirectory("switch-b-");
+        fileSourceProperties.getSources().add(source("switch-a", switchA, "*.log", 3));
+        fileSourceProperties.getSources().add(source("switch-b", switchB, "*.log", 1));
+
+        File fileA = createTestFile(switchA, "a1.log");
+        File ignored = createTestFile(switchA, "a2.tmp");
+        File fileB = createTestFile(switchB, "b1.log");
+
+        when(fileProcessingService.hasBeenProcessed(anyString())).thenReturn(false);
+
+        // When
+        fileMonitoringService.monitorDirectory();
+
+        // Then
+        verify(fileProcessingService, timeout(1000)).processFile(fileA, processedDirectory.toString());
+        verify(fileProcessingService, timeout(1000)).processFile(fileB, processedDirectory.toString());
+        verify(fileProcessingService, never()).processFile(eq(ignored), anyString());
+        awaitIdle();
+        assertEquals(List.of(
+                new WeightedFairScheduler.SourceBacklog("switch-a", 0, 0, 1),
+                new WeightedFairScheduler.SourceBacklog("switch-b", 0, 0, 1)),
+                fileMonitoringService.getSourceBacklog());
+    }
+
+    @Test
+    void monitorDirectory_shouldNotWaitForOrRequeueRunningFiles() throws Exception {
+        // Given
+        File file1 = createTestFile(monitoringDirectory, "file1.log");
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(fileProcessingService.hasBeenProcessed("file1.log")).thenReturn(false);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(fileProcessingService).processFile(eq(file1), anyString());
+
+        // When - the second scan runs while the first file is still being processed
+        fileMonitoringService.monitorDirectory();
+        verify(fileProcessingService, timeout(1000)).processFile(eq(file1), anyString());
+        fileMonitoringService.monitorDirectory();
+        release.countDown();
+
+        // Then
+        awaitIdle();
+        verify(fileProcessingService, times(1)).processFile(eq(file1), anyString());
+        verify(fileProcessingService, times(1)).hasBeenProcessed("file1.log");
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fileMonitoringService.getSourceBacklog().stream().anyMatch(backlog -> backlog.queued() + backlog.inFlight() > 0)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Files still queued: " + fileMonitoringService.getSourceBacklog());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private FileSourceProperties.Source source(String name, Path directory, String pattern, int weight) {
+        FileSourceProperties.Source source = new FileSourceProperties.Source();
+        source.setName(name);
+        source.setDirectory(directory.toString());
+        source.setProcessedDirectory(processedDirectory.toString());
+        source.setFilePattern(pattern);
+        source.setWeight(weight);
+        return source;
+    }
+
     private File createTestFile(Path directory, String fileName) throws IOException {
         Path filePath = directory.resolve(fileName);
         Files.writeString(filePath, "Test content");
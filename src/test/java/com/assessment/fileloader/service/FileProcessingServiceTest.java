@@ -1,8 +1,10 @@
 package com.assessment.fileloader.service;
 
 import com.assessment.fileloader.model.CallDetailRecord;
+import com.assessment.fileloader.model.CdrColumnBatch;
 import com.assessment.fileloader.model.CdrLog;
 import com.assessment.fileloader.repository.CallDetailRecordRepository;
+import com.assessment.fileloader.repository.CdrColumnBatchWriter;
 import com.assessment.fileloader.repository.CdrLogRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,15 +13,32 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +50,18 @@ class FileProcessingServiceTest {
     @Mock
     private CdrLogRepository cdrLogRepository;
 
+    @Mock
+    private CdrColumnBatchWriter cdrColumnBatchWriter;
+
+    @Mock
+    private SpoolService spoolService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private RecentRecordIndex recentRecordIndex = new RecentRecordIndex(true, 1000, 60);
+
     @InjectMocks
     private FileProcessingService fileProcessingService;
 
@@ -145,4 +176,255 @@ class FileProcessingServiceTest {
         assertEquals(0, capturedLog.getSuccessCount());
         assertEquals(0, capturedLog.getFailedCount());
     }
-}
\ No newline at end of file
+
+    @Test
+    void processFile_shouldWriteColumnarBatchesWhenEnabled() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileProcessingService, "columnarEnabled", true);
+        ReflectionTestUtils.setField(fileProcessingService, "batchSize", 1);
+
+        List<String> writtenMsisdns = new ArrayList<>();
+        when(cdrColumnBatchWriter.write(any(CdrColumnBatch.class))).thenAnswer(invocation -> {
+            CdrColumnBatch batch = invocation.getArgument(0);
+            for (int row = 0; row < batch.size(); row++) {
+                writtenMsisdns.add(batch.getString(CdrColumnBatch.MSISDN, row));
+            }
+            return batch.size();
+        });
+        when(cdrLogRepository.save(any(CdrLog.class))).thenReturn(new CdrLog());
+
+        // When
+        fileProcessingService.processFile(testFile, processedDirectory);
+
+        // Then
+        verify(callDetailRecordRepository, never()).saveAll(any());
+        verify(cdrLogRepository).save(cdrLogCaptor.capture());
+
+        // Verify every row was flushed through the batch writer
+        assertEquals(List.of("573228553366", "573228553367"), writtenMsisdns);
+
+        CdrLog capturedLog = cdrLogCaptor.getValue();
+        assertEquals(2, capturedLog.getSuccessCount());
+        assertEquals(0, capturedLog.getFailedCount());
+    }
+
+    @Test
+    void processFile_shouldSpoolWhenDatabaseUnavailable() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileProcessingService, "batchSize", 10);
+        when(spoolService.isEnabled()).thenReturn(true);
+        when(callDetailRecordRepository.saveAll(any())).thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        List<Integer> spooledRows = new ArrayList<>();
+        doAnswer(invocation -> spooledRows.add(invocation.<CdrColumnBatch>getArgument(0).size()))
+                .when(spoolService).appendBatch(any(CdrColumnBatch.class));
+
+        // When
+        fileProcessingService.processFile(testFile, processedDirectory);
+
+        // Then
+        verify(spoolService).markUnavailable(eq(testFile.getName()), any(DataAccessResourceFailureException.class));
+        verify(spoolService).beginFile();
+        verify(spoolService).commitFile(cdrLogCaptor.capture());
+        verify(spoolService, never()).abortFile();
+        verify(cdrLogRepository, never()).save(any(CdrLog.class));
+
+        assertEquals(List.of(2), spooledRows);
+        CdrLog capturedLog = cdrLogCaptor.getValue();
+        assertEquals(testFile.getName(), capturedLog.getFileName());
+        assertEquals(2, capturedLog.getSuccessCount());
+        assertNotNull(capturedLog.getUploadEndTime());
+    }
+
+    @Test
+    void processFile_shouldNotSpoolConstraintViolations() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileProcessingService, "batchSize", 10);
+        when(spoolService.isEnabled()).thenReturn(true);
+        when(cdrLogRepository.save(any(CdrLog.class))).thenThrow(new DataIntegrityViolationException("null value in column"));
+
+        // When / Then - the file stays in place instead of going to the spool
+        assertThrows(DataIntegrityViolationException.class, () -> fileProcessingService.processFile(testFile, processedDirectory));
+        verify(spoolService, never()).markUnavailable(anyString(), any());
+        verify(spoolService, never()).beginFile();
+        assertTrue(testFile.exists());
+    }
+
+    @Test
+    void processFile_shouldSpoolWhileSpoolIsActive() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileProcessingService, "batchSize", 10);
+        when(spoolService.isActive()).thenReturn(true);
+
+        // When
+        fileProcessingService.processFile(testFile, processedDirectory);
+
+        // Then
+        verifyNoInteractions(callDetailRecordRepository, cdrColumnBatchWriter, transactionManager);
+        verify(spoolService).appendBatch(any(CdrColumnBatch.class));
+        verify(spoolService).commitFile(any(CdrLog.class));
+    }
+
+    @Test
+    void processFile_shouldSkipRenamedDuplicate() throws IOException {
+        // Given
+        CdrLog original = new CdrLog();
+        original.setFileName("original.log");
+        when(cdrLogRepository.findFirstByContentHashAndFileSizeOrderByIdAsc(any(), eq(testFile.length())))
+                .thenReturn(Optional.of(original));
+
+        // When
+        fileProcessingService.processFile(testFile, processedDirectory);
+
+        // Then
+        verifyNoInteractions(callDetailRecordRepository, cdrColumnBatchWriter, transactionManager);
+        verify(cdrLogRepository, never()).save(any(CdrLog.class));
+        assertTrue(new File(processedDirectory, testFile.getName()).exists());
+    }
+
+    @Test
+    void processFile_shouldRecordContentFingerprint() throws IOException {
+        // Given
+        when(cdrLogRepository.save(any(CdrLog.class))).thenReturn(new CdrLog());
+        long fileSize = testFile.length();
+
+        // When
+        fileProcessingService.processFile(testFile, processedDirectory);
+
+        // Then - the file has been moved, so its size is read up front
+        verify(cdrLogRepository).save(cdrLogCaptor.capture());
+        assertNotNull(cdrLogCaptor.getValue().getContentHash());
+        assertEquals(fileSize, cdrLogCaptor.getValue().getFileSize());
+        assertTrue(new File(processedDirectory, testFile.getName()).exists());
+    }
+
+    @Test
+    void loadForBackfill_shouldLoadFileAndLogEntryWithoutMoving() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileProcessingService, "batchSize", 10);
+        Set<ContentFingerprint.Fingerprint> claimed = new HashSet<>();
+
+        // When
+        Optional<CdrLog> first = fileProcessingService.loadForBackfill(testFile, claimed);
+        Optional<CdrLog> second = fileProcessingService.loadForBackfill(testFile, claimed);
+
+        // Then
+        verify(cdrColumnBatchWriter).write(any(CdrColumnBatch.class));
+        verify(cdrLogRepository).save(cdrLogCaptor.capture());
+        assertSame(first.orElseThrow(), cdrLogCaptor.getValue());
+        assertTrue(testFile.exists());
+
+        assertTrue(first.isPresent());
+        assertEquals(2, first.get().getSuccessCount());
+        assertEquals(testFile.length(), first.get().getFileSize());
+        assertNotNull(first.get().getUploadEndTime());
+
+        // The same content is not loaded twice in one run
+        assertTrue(second.isEmpty());
+    }
+
+    @Test
+    void loadForBackfill_shouldReleaseContentOfFailedFile() throws IOException {
+        // Given
+        ReflectionTestUtils.setField(fileProcessingService, "batchSize", 10);
+        Set<ContentFingerprint.Fingerprint> claimed = new HashSet<>();
+        when(cdrLogRepository.save(any(CdrLog.class)))
+                .thenThrow(new DataIntegrityViolationException("null value in column"))
+                .thenReturn(null);
+
+        // When
+        assertThrows(DataIntegrityViolationException.class, () -> fileProcessingService.loadForBackfill(testFile, claimed));
+        Optional<CdrLog> retried = fileProcessingService.loadForBackfill(testFile, claimed);
+
+        // Then - a later file with the same content is loaded rather than skipped
+        assertTrue(retried.isPresent());
+        assertEquals(1, claimed.size());
+    }
+
+    @Test
+    void processFile_shouldNotRecordFingerprintOfFailedFile() throws IOException {
+        // Given
+        when(spoolService.isActive()).thenReturn(true);
+        doThrow(new IOException("Disk full")).when(spoolService).beginFile();
+
+        // When
+        fileProcessingService.processFile(testFile, processedDirectory);
+
+        // Then - a renamed resend of the same content is not mistaken for a loaded file
+        verify(cdrLogRepository).save(cdrLogCaptor.capture());
+        assertNull(cdrLogCaptor.getValue().getContentHash());
+        assertNull(cdrLogCaptor.getValue().getFileSize());
+    }
+
+    @Test
+    void processFile_shouldIndexRecentRecordsOnlyOnceCommitted() throws IOException {
+        // Given - a record from just now, and a first attempt that is rolled back
+        String now = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS"));
+        Files.writeString(testFile.toPath(), now + "|15845|15|0|4|573103154359||6|0|4|573103804442|*611#|1|1|573103154393|1|6|732101647793504|1|1|573228553366|||||FAILED_DIALOG_USER_ABORT|PULL|" + now.replace(',', '.') + "|5948547|924990671|50141|3,2,2,1,1|1c3394ad-2ac0-4bcb-9d87-882a442ea947");
+        when(cdrLogRepository.save(any(CdrLog.class)))
+                .thenThrow(new DataIntegrityViolationException("null value in column"))
+                .thenReturn(new CdrLog());
+
+        // When / Then
+        assertThrows(DataIntegrityViolationException.class, () -> fileProcessingService.processFile(testFile, processedDirectory));
+        assertTrue(recentRecordIndex.findByMsisdn("573228553366", 60).isEmpty());
+
+        fileProcessingService.processFile(testFile, processedDirectory);
+        assertEquals(1, recentRecordIndex.findByMsisdn("573228553366", 60).size());
+    }
+
+    @Test
+    void isNameCollision_shouldCompareContentOfSameNamedFiles() throws IOException {
+        // Given
+        long hash = ContentFingerprint.of(testFile.toPath(), 0).hash();
+        CdrLog sameContent = new CdrLog();
+        sameContent.setContentHash(hash);
+        sameContent.setFileSize(testFile.length());
+        CdrLog otherContent = new CdrLog();
+        otherContent.setContentHash(hash + 1);
+        otherContent.setFileSize(testFile.length());
+
+        // When / Then
+        when(cdrLogRepository.findByFileName(testFile.getName())).thenReturn(List.of(otherContent));
+        assertTrue(fileProcessingService.isNameCollision(testFile));
+
+        when(cdrLogRepository.findByFileName(testFile.getName())).thenReturn(List.of(otherContent, sameContent));
+        assertFalse(fileProcessingService.isNameCollision(testFile));
+    }
+
+    @Test
+    void processFile_shouldEmitFlightRecorderEvents() throws IOException {
+        // Given
+        when(cdrLogRepository.save(any(CdrLog.class))).thenReturn(new CdrLog());
+        Path recordingFile = Files.createTempFile("file-loader-", ".jfr");
+
+        // When
+        try (Recording recording = new Recording()) {
+            recording.enable("com.assessment.fileloader.FileIngested");
+            recording.enable("com.assessment.fileloader.BatchPersisted");
+            recording.enable("com.assessment.fileloader.FileMoved");
+            recording.start();
+            fileProcessingService.processFile(testFile, processedDirectory);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        // Then
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        RecordedEvent ingested = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.assessment.fileloader.FileIngested"))
+                .findFirst().orElseThrow();
+        assertEquals(testFile.getName(), ingested.getString("fileName"));
+        assertEquals(2, ingested.getInt("lines"));
+        assertEquals("LOADED", ingested.getString("outcome"));
+
+        RecordedEvent batch = events.stream()
+                .filter(e -> e.getEventType().getName().equals("com.assessment.fileloader.BatchPersisted"))
+                .findFirst().orElseThrow();
+        assertEquals(2, batch.getInt("rows"));
+        assertEquals("JPA", batch.getString("target"));
+
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.assessment.fileloader.FileMoved")
+                && e.getBoolean("success")));
+    }
+}
@@ -0,0 +1,117 @@
+package com.assessment.fileloader.service;
+
+import com.assessment.fileloader.model.CallDetailRecord;
+import com.assessment.fileloader.model.CdrColumnBatch;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentRecordIndexTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2023-08-18T10:30:00Z"), ZoneOffset.UTC);
+
+    @Test
+    void findByMsisdn_shouldReturnRecentRecordsNewestFirst() {
+        // Given
+        RecentRecordIndex index = new RecentRecordIndex(true, 100, 60, clock);
+        index.index(batch(
+                row("2023-08-18 10:00:00,024", "573228553366", "first"),
+                row("2023-08-18 09:00:00,000", "573228553366", "too-old"),
+                row("2023-08-18 10:10:00,000", "573228553367", "other"),
+                row("2023-08-18 10:20:00,000", "573228553366", "second")));
+
+        // When
+        List<RecentRecordIndex.RecentRecord> lastHour = index.findByMsisdn("573228553366", 60);
+        List<RecentRecordIndex.RecentRecord> lastQuarter = index.findByMsisdn("573228553366", 15);
+
+        // Then
+        assertEquals(List.of("second", "first"), lastHour.stream().map(RecentRecordIndex.RecentRecord::recordId).toList());
+        assertEquals(LocalDateTime.of(2023, 8, 18, 10, 20), lastHour.get(0).recordDate());
+        assertEquals(List.of("second"), lastQuarter.stream().map(RecentRecordIndex.RecentRecord::recordId).toList());
+        assertTrue(index.findByMsisdn("0573228553366", 60).isEmpty());
+    }
+
+    @Test
+    void findByImsi_shouldIndexEntityRecords() {
+        // Given
+        RecentRecordIndex index = new RecentRecordIndex(true, 100, 60, clock);
+        CallDetailRecord record = new CallDetailRecord();
+        record.setRecordDate(LocalDateTime.of(2023, 8, 18, 10, 15));
+        record.setMsisdn("573228553366");
+        record.setImsi("732101647793504");
+        record.setDialogDuration(50141L);
+        record.setRecordId("entity");
+
+        // When
+        index.index(List.of(record));
+
+        // Then
+        List<RecentRecordIndex.RecentRecord> found = index.findByImsi("732101647793504", 60);
+        assertEquals(1, found.size());
+        assertEquals(50141L, found.get(0).dialogDuration());
+        assertEquals("573228553366", found.get(0).msisdn());
+    }
+
+    @Test
+    void publish_shouldOnlyIndexStagedRecordsOncePublished() {
+        // Given
+        RecentRecordIndex index = new RecentRecordIndex(true, 100, 60, clock);
+        CdrColumnBatch batch = batch(row("2023-08-18 10:00:00,024", "573228553366", "staged"));
+        RecentRecordIndex.Staged staged = index.stage();
+        staged.add(batch);
+
+        // When - the batch is reused for the next rows before the file is committed
+        batch.clear();
+        RecentRecordIndex.Staged discarded = index.stage();
+        discarded.add(batch(row("2023-08-18 10:01:00,000", "573228553366", "rolled-back")));
+
+        // Then
+        assertTrue(index.findByMsisdn("573228553366", 60).isEmpty());
+        index.publish(staged);
+        assertEquals(List.of("staged"), index.findByMsisdn("573228553366", 60).stream().map(RecentRecordIndex.RecentRecord::recordId).toList());
+    }
+
+    @Test
+    void index_shouldDropRecordsOverwrittenInTheRing() {
+        // Given
+        RecentRecordIndex index = new RecentRecordIndex(true, 4, 60, clock);
+        index.index(batch(
+                row("2023-08-18 10:00:00,000", "111", "a1"),
+                row("2023-08-18 10:01:00,000", "222", "b1"),
+                row("2023-08-18 10:02:00,000", "111", "a2")));
+
+        // When
+        index.index(batch(
+                row("2023-08-18 10:03:00,000", "333", "c1"),
+                row("2023-08-18 10:04:00,000", "333", "c2"),
+                row("2023-08-18 10:05:00,000", "333", "c3")));
+        index.sweep();
+
+        // Then
+        assertEquals(List.of("a2"), index.findByMsisdn("111", 60).stream().map(RecentRecordIndex.RecentRecord::recordId).toList());
+        assertTrue(index.findByMsisdn("222", 60).isEmpty());
+        assertEquals(3, index.findByMsisdn("333", 60).size());
+    }
+
+    private static String[] row(String recordDate, String msisdn, String recordId) {
+        return new String[]{recordDate, msisdn, recordId};
+    }
+
+    private static CdrColumnBatch batch(String[]... rows) {
+        CdrColumnBatch batch = new CdrColumnBatch(rows.length);
+        for (String[] row : rows) {
+            batch.beginRow();
+            batch.putTimestamp(CdrColumnBatch.RECORD_DATE, row[0], 0, row[0].length(), ',');
+            batch.setString(CdrColumnBatch.MSISDN, row[1]);
+            batch.setString(CdrColumnBatch.RECORD_UNIQUE_ID, row[2]);
+            batch.commitRow();
+        }
+        return batch;
+    }
+}
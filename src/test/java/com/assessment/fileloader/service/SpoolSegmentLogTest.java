@@ -0,0 +1,162 @@
+package com.assessment.fileloader.service;
+
+import com.assessment.fileloader.model.CdrColumnBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpoolSegmentLogTest {
+
+    private Path spoolDirectory;
+    private SpoolSegmentLog segmentLog;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        spoolDirectory = Files.createTempDirectory("spool-");
+        segmentLog = new SpoolSegmentLog(spoolDirectory);
+    }
+
+    @Test
+    void drain_shouldReplayCommittedFilesInOrder() throws IOException {
+        // Given
+        spool("first.log", "111", "222");
+        segmentLog.beginGroup();
+        segmentLog.appendBatch(batch("999"));
+        segmentLog.abortGroup();
+        spool("second.log", "333");
+
+        // When
+        List<String> replayed = new ArrayList<>();
+        int count = segmentLog.drain((file, batches) -> {
+            replayed.add(file.fileName());
+            batches.forEachRemaining(batch -> replayed.add(batch.getString(CdrColumnBatch.MSISDN, 0)));
+        });
+
+        // Then
+        assertEquals(2, count);
+        assertEquals(List.of("first.log", "111", "222", "second.log", "333"), replayed);
+        assertTrue(segmentLog.isEmpty());
+    }
+
+    @Test
+    void drain_shouldKeepFilesThatFailToReplay() throws IOException {
+        // Given
+        spool("first.log", "111");
+        spool("second.log", "222");
+
+        // When - the database fails on the second file
+        List<String> replayed = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> segmentLog.drain((file, batches) -> {
+            if (file.fileName().equals("second.log")) {
+                throw new IllegalStateException("Database unavailable");
+            }
+            replayed.add(file.fileName());
+        }));
+        segmentLog.drain((file, batches) -> replayed.add(file.fileName()));
+
+        // Then - the first file is not replayed twice
+        assertEquals(List.of("first.log", "second.log"), replayed);
+        assertTrue(segmentLog.isEmpty());
+    }
+
+    @Test
+    void drain_shouldDiscardTornTail() throws IOException {
+        // Given
+        spool("first.log", "111");
+        Path segment;
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{1, 0, 0, 0, 42, 7}, StandardOpenOption.APPEND);
+
+        // When - a restarted process drains the spool
+        SpoolSegmentLog restarted = new SpoolSegmentLog(spoolDirectory);
+        List<String> replayed = new ArrayList<>();
+        restarted.drain((file, batches) -> replayed.add(file.fileName()));
+
+        // Then
+        assertEquals(List.of("first.log"), replayed);
+        assertTrue(restarted.isEmpty());
+    }
+
+    @Test
+    void drain_shouldQuarantineUnreplayableFiles() throws IOException {
+        // Given
+        spool("invalid.log", "111");
+        Path segment;
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] invalidGroup = Files.readAllBytes(segment);
+        spool("valid.log", "222");
+
+        // When
+        List<String> replayed = new ArrayList<>();
+        int count = segmentLog.drain((file, batches) -> {
+            if (file.fileName().equals("invalid.log")) {
+                throw new SpoolSegmentLog.UnreplayableGroupException("Constraint violation", null);
+            }
+            replayed.add(file.fileName());
+        });
+
+        // Then - the rejected file is set aside and does not block the next one
+        assertEquals(1, count);
+        assertEquals(List.of("valid.log"), replayed);
+        assertTrue(segmentLog.isEmpty());
+
+        String segmentName = segment.getFileName().toString();
+        Path quarantined = spoolDirectory.resolve("quarantine").resolve(segmentName.replace(".log", "-0.log"));
+        assertArrayEquals(invalidGroup, Files.readAllBytes(quarantined));
+    }
+
+    @Test
+    void drain_shouldMoveSegmentWithCorruptEntryToQuarantine() throws IOException {
+        // Given - a committed group follows a corrupt entry
+        spool("first.log", "111");
+        Path segment;
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        long firstGroupEnd = Files.size(segment);
+        spool("second.log", "222");
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[(int) firstGroupEnd + 5] ^= 1;
+        Files.write(segment, bytes);
+
+        // When
+        List<String> replayed = new ArrayList<>();
+        segmentLog.drain((file, batches) -> replayed.add(file.fileName()));
+
+        // Then - the unreadable rest of the segment is kept for inspection
+        assertEquals(List.of("first.log"), replayed);
+        assertTrue(segmentLog.isEmpty());
+        assertArrayEquals(bytes, Files.readAllBytes(spoolDirectory.resolve("quarantine").resolve(segment.getFileName())));
+    }
+
+    private void spool(String fileName, String... msisdns) throws IOException {
+        segmentLog.beginGroup();
+        for (String msisdn : msisdns) {
+            segmentLog.appendBatch(batch(msisdn));
+        }
+        LocalDateTime now = LocalDateTime.now();
+        segmentLog.commitGroup(new SpoolSegmentLog.SpooledFile(fileName, now, now, msisdns.length, 0, 0L, 0L));
+    }
+
+    private CdrColumnBatch batch(String msisdn) {
+        CdrColumnBatch batch = new CdrColumnBatch(1);
+        batch.beginRow();
+        batch.putString(CdrColumnBatch.MSISDN, msisdn, 0, msisdn.length());
+        batch.commitRow();
+        return batch;
+    }
+}
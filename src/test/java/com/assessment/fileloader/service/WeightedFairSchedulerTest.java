@@ -0,0 +1,107 @@
+package com.assessment.fileloader.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedFairSchedulerTest {
+
+    @Test
+    void poll_shouldShareSlotsByWeight() {
+        // Given
+        WeightedFairScheduler<Integer> scheduler = new WeightedFairScheduler<>(1);
+        scheduler.register("noisy", 1, 1);
+        scheduler.register("quiet", 2, 1);
+        for (int i = 0; i < 100; i++) {
+            scheduler.submit("noisy", i);
+        }
+        for (int i = 100; i < 104; i++) {
+            scheduler.submit("quiet", i);
+        }
+
+        // When
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            WeightedFairScheduler.Task<Integer> task = scheduler.poll();
+            order.add(task.source());
+            scheduler.complete(task);
+        }
+
+        // Then - the quiet source is not stuck behind the noisy backlog
+        assertEquals(4, order.stream().filter("quiet"::equals).count());
+        assertEquals(2, order.stream().filter("noisy"::equals).count());
+    }
+
+    @Test
+    void poll_shouldRespectPerSourceConcurrency() {
+        // Given
+        WeightedFairScheduler<Integer> scheduler = new WeightedFairScheduler<>(4);
+        scheduler.register("a", 1, 1);
+        scheduler.register("b", 1, 2);
+        scheduler.submit("a", 1);
+        scheduler.submit("a", 2);
+        scheduler.submit("b", 3);
+        scheduler.submit("b", 4);
+        scheduler.submit("b", 5);
+
+        // When
+        List<WeightedFairScheduler.Task<Integer>> running = new ArrayList<>();
+        WeightedFairScheduler.Task<Integer> task;
+        while ((task = scheduler.poll()) != null) {
+            running.add(task);
+        }
+
+        // Then
+        assertEquals(3, running.size());
+        assertEquals(1, running.stream().filter(t -> t.source().equals("a")).count());
+        assertEquals(List.of(
+                new WeightedFairScheduler.SourceBacklog("a", 1, 1, 0),
+                new WeightedFairScheduler.SourceBacklog("b", 1, 2, 0)), scheduler.backlog());
+    }
+
+    @Test
+    void submit_shouldIgnoreItemsAlreadyQueuedOrInFlight() {
+        WeightedFairScheduler<Integer> scheduler = new WeightedFairScheduler<>(1);
+        scheduler.register("a", 1, 1);
+
+        assertTrue(scheduler.submit("a", 1));
+        assertFalse(scheduler.submit("a", 1));
+
+        WeightedFairScheduler.Task<Integer> task = scheduler.poll();
+        assertFalse(scheduler.submit("a", 1));
+        assertTrue(scheduler.isPending(1));
+
+        scheduler.complete(task);
+        assertFalse(scheduler.isPending(1));
+        assertTrue(scheduler.submit("a", 1));
+    }
+
+    @Test
+    void submit_shouldIgnoreItemsPendingForAnotherSource() {
+        WeightedFairScheduler<Integer> scheduler = new WeightedFairScheduler<>(1);
+        scheduler.register("a", 1, 1);
+        scheduler.register("b", 1, 1);
+
+        assertTrue(scheduler.submit("a", 1));
+        assertFalse(scheduler.submit("b", 1));
+        assertEquals(List.of(
+                new WeightedFairScheduler.SourceBacklog("a", 1, 0, 0),
+                new WeightedFairScheduler.SourceBacklog("b", 0, 0, 0)), scheduler.backlog());
+    }
+
+    @Test
+    void take_shouldReturnNullWhenDrained() throws InterruptedException {
+        WeightedFairScheduler<Integer> scheduler = new WeightedFairScheduler<>(1);
+        scheduler.register("a", 1, 1);
+        scheduler.submit("a", 1);
+
+        WeightedFairScheduler.Task<Integer> task = scheduler.take();
+        scheduler.complete(task);
+
+        assertEquals(1, task.item());
+        assertNull(scheduler.take());
+    }
+}